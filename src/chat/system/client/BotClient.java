@@ -3,29 +3,59 @@ package chat.system.client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Subclass of ChatClient that behaves as a computer controlled bot.
+ * <br></br>
+ * Messages that mention the bot are put in a bounded backlog as soon as they are read, and a pool of worker threads
+ * takes them out of the backlog and answers them, so several messages can be answered at once. Each worker has a
+ * backlog of its own and every message from a user goes to the same worker, so a user's messages are still answered
+ * one at a time, in the order they were sent. The bot remembers a
+ * little about its conversation with each user, for the most recently active users.
  */
 public class BotClient extends ChatClient {
 
-    // arrays of responses the bot can give
-    private static final String[] BOT_QUESTIONS = {"How are you?", "Are you well?", "How do you feel?", "Are you ok?"};
-    private static final String[] GREETING_RESPONSES = {"Hello.", "Hi.", "Greetings."};
-    private static final String[] BOT_FEELING_RESPONSES = {"I am well.", "I am good.", "I am fine."};
-    private static final String[] USER_POSITIVE_FEELING_RESPONSES = {"That is good to hear.", "I am glad to hear thet you feel well.", "I think it is great you feel this way."};
-    private static final String[] USER_NEGATIVE_FEELING_RESPONSES = {"It is unfortunate that you feel like this.", "I am sorry to hear you feel this way.", "I hope you start to feel more positive soon."};
-    private static final String[] THANK_RESPONSES = {"You are welcome.", " No problem."};
-    private static final String[] GOODBYE_RESPONSES = {"Goodbye.", "Bye.", "Farewell.", "See you later."};
-    private static final String[] UNKNOWN_RESPONSES = {"I am sorry, but I do not understand.", "Apologies, I do not know how to respond to that."};
+    // the phrases the bot understands, in the format read by IntentMatcher, the first matching intent is used
+    private static final String[] DEFAULT_PHRASES = {
+        "greeting: hello", "greeting: hi", "greeting: greetings",
+        "bot-feeling: how are you", "bot-feeling: are you ok", "bot-feeling: how doe you feel",
+        "user-negative-feeling: not well", "user-negative-feeling: bad !not bad", "user-negative-feeling: not great",
+        "user-negative-feeling: sad", "user-negative-feeling: upset", "user-negative-feeling: low",
+        "user-negative-feeling: not good",
+        "user-positive-feeling: good", "user-positive-feeling: well", "user-positive-feeling: ok",
+        "user-positive-feeling: fine", "user-positive-feeling: great", "user-positive-feeling: brilliant",
+        "user-positive-feeling: excellent", "user-positive-feeling: happy", "user-positive-feeling: not bad",
+        "thanks: thank you", "thanks: thanks",
+        "goodbye: bye", "goodbye: goodbye", "goodbye: see you later"
+    };
 
-    private boolean responseRequired;
+    static final IntentMatcher DEFAULT_INTENTS = new IntentMatcher(Arrays.asList(DEFAULT_PHRASES));
 
-    private ArrayList<String> botMessages; // messages the bot has received
+    private static final int MAX_CONVERSATIONS = 1000; // the number of users the bot remembers its conversation with
+    private static final int BACKLOG_CAPACITY = 1000; // the number of messages that can wait for each worker
 
-    private int responsesGiven;
+    // messages the bot has received and not yet started to answer, one backlog per worker, chosen by sender
+    private MessageBacklog[] botMessages;
+    private long reportedDropped; // the dropped messages the user has been told about, only used by the read thread
+
+    private int workerCount; // the number of threads answering messages
+    private ExecutorService workers;
+
+    private ConcurrentHashMap<String, Conversation> conversations; // the conversation with each user, by name
+
+    private Random random; // every random choice of the bot is made with this, so conversations can be repeated
+
+    private IntentClassifier classifier; // works out what each message is about
+    private ResponseTable responses; // the responses the bot can give
 
     /**
      * Constructor for a BotClient object, assigns fields initial values.
@@ -35,161 +65,227 @@ public class BotClient extends ChatClient {
     public BotClient(String address, int port) {
         super(address, port);
 
-        responseRequired = false;
+        workerCount = Runtime.getRuntime().availableProcessors();
+
+        conversations = new ConcurrentHashMap<String, Conversation>();
+
+        random = new Random();
+
+        classifier = DEFAULT_INTENTS;
+        responses = ResponseTable.DEFAULT;
+    }
 
-        botMessages = new ArrayList<String>();
+    /**
+     * Seeds the random choices of the bot, so the same messages always get the same responses.
+     * @param seed The seed of the random generator.
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Replaces the classifier the bot uses to work out what messages are about, by default the bot matches the
+     * built in phrases.
+     * @param classifier The new classifier.
+     */
+    public void setClassifier(IntentClassifier classifier) {
+        this.classifier = classifier;
+    }
 
-        responsesGiven = 0;
+    /**
+     * Replaces the responses the bot can give.
+     * @param responses The new response table.
+     */
+    public void setResponses(ResponseTable responses) {
+        this.responses = responses;
     }
 
     /**
-     * @return True if the bot needs to respond to a message. False if there are no messages it has not responded to.
+     * Sets the number of threads that answer messages, must be called before the bot is started.
+     * @param workerCount The number of threads, at least 1.
      */
-    public boolean getResponseRequired() {
-        return responseRequired;
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
     }
 
     /**
-     * Starts the bot running. It sets the name of the bot and connects it to the server.
+     * Starts the bot running. It sets the name of the bot, starts the threads that answer messages and connects it
+     * to the server.
      */
     @Override
     public void start() {
         setName("ChatBot");
+        startWorkers();
         connectToServer();
     }
 
     /**
-     * Adds the message provided as an argument to the ArrayList of messages.
-     * Also sets responseRequired to true to prompt a reply to the added message.
+     * Starts the worker threads, each of which waits for a message to arrive in its backlog and answers it.
+     */
+    private void startWorkers() {
+        botMessages = new MessageBacklog[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            botMessages[i] = new MessageBacklog(BACKLOG_CAPACITY);
+        }
+
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "BotWorker");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (int i = 0; i < workerCount; i++) {
+            final MessageBacklog backlog = botMessages[i];
+            workers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) {
+                            respond(backlog.take());
+                        }
+                    } catch (InterruptedException e) {
+                        // the bot is shutting down
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds the message provided as an argument to the backlog of the worker that answers its sender, waking the
+     * worker to answer it. If the same message is already waiting it is only answered once, and if the backlog is
+     * full the oldest waiting message is dropped.
      * @param message
      */
     public void addMessage(String message) {
-        botMessages.add(message);
-        responseRequired = true;
+        int worker = (getSender(message).hashCode() & Integer.MAX_VALUE) % botMessages.length;
+        botMessages[worker].add(message);
+
+        // tell the user each time the total doubles, rather than for every message
+        long dropped = 0;
+        for (MessageBacklog backlog : botMessages) {
+            dropped += backlog.getDropped();
+        }
+        if (dropped != reportedDropped) {
+            reportedDropped = dropped;
+
+            if (Long.bitCount(dropped) == 1) {
+                display("The bot is falling behind, " + dropped + " messages have been dropped.");
+            }
+        }
     }
 
     /**
-     * Takes the message and checks for specific phrases and words to determine the type of message
-     * it received.
+     * Answers a message and sends the answer to the server.
      * @param message The message received from a user.
-     * @return The type of message the bot thinks it has received, as a string.
      */
-    public String analyseMessage(String message) {
-        String messageType = "";
-
-        if (message.contains("hello") || message.contains("hi") || message.contains("greetings")) {
-            messageType = "greeting";
-        } else if (message.contains("how are you") || message.contains("are you ok") || message.contains("how doe you feel")) {
-            messageType = "bot-feeling";
-        } else if (message.contains("not well") || (message.contains("bad") && !message.contains("not bad"))
-                || message.contains("not great") || message.contains("sad") || message.contains("upset")
-                || message.contains("low") || message.contains("not good")) {
-            messageType = "user-negative-feeling";
-        } else if (message.contains("good") || message.contains("well") || message.contains("ok")
-                || message.contains("fine") || message.contains("great") || message.contains("brilliant")
-                || message.contains("excellent") || message.contains("happy") || message.contains("not bad")) {
-            messageType = "user-positive-feeling";
-        } else if (message.contains("thank you") || message.contains("thanks")) {
-            messageType = "thanks";
-        } else if (message.contains("bye") || message.contains("goodbye") || message.contains("see you later")) {
-            messageType = "goodbye";
-        }
+    private void respond(String message) {
+        Conversation conversation = getConversation(getSender(message));
+        conversation.addMessage();
 
-        return messageType;
+        String response = generateResponse(analyseMessage(message), conversation);
+        sendToServer("[" + getName() + "]: " + response);
     }
 
     /**
-     * Takes the type of message generated from the analysis of the message and generates a response it deems appropriate.
-     * It does this by generating a random number and using this number as an index to get a random element from the
-     * array that has the responses for the given message type. In some cases, responses are concatenated to form a more
-     * complex sentence as a reply. It does this by, in appropriate circumstances, generating a random number and adding an
-     * extra clause to the end of the initial response if that number is even.
-     * @param messageType The type of message returned by analyseMessage()
-     * @return The response the bot has generated for the message received.
+     * @param message A message received from the server.
+     * @return The name of the user who sent the message, or an empty string if it was not sent by a user.
      */
-    public String generateResponse(String messageType) {
-        Random random = new Random();
-        int replyIndex = 0;
-        String generatedResponse = "";
-
-        switch (messageType) {
-            case "greeting":
-                replyIndex = random.nextInt(GREETING_RESPONSES.length);
-                generatedResponse += GREETING_RESPONSES[replyIndex] + " ";
-
-                if (random.nextInt() % 2 == 0) {
-                    replyIndex = random.nextInt(BOT_QUESTIONS.length);
-                    generatedResponse += BOT_QUESTIONS[replyIndex];
-                }
+    static String getSender(String message) {
+        int end = message.indexOf("]:");
+        if (!message.startsWith("[") || end < 0) {
+            return "";
+        }
 
-                break;
+        return message.substring(1, end);
+    }
 
-            case "bot-feeling":
-                replyIndex = random.nextInt(BOT_FEELING_RESPONSES.length);
-                generatedResponse += BOT_FEELING_RESPONSES[replyIndex] + " ";
+    /**
+     * Gets the conversation with a user, starting a new one if the bot does not remember them. If the bot already
+     * remembers too many users, it forgets the quarter of them that were least recently active.
+     * @param user The name of the user.
+     * @return The conversation with the user.
+     */
+    private Conversation getConversation(String user) {
+        Conversation conversation = conversations.get(user);
+        if (conversation != null) {
+            return conversation;
+        }
 
-                if (random.nextInt() % 2 == 0) {
-                    replyIndex = random.nextInt(BOT_QUESTIONS.length);
-                    generatedResponse += BOT_QUESTIONS[replyIndex];
-                }
+        if (conversations.size() >= MAX_CONVERSATIONS) {
+            forgetConversations();
+        }
 
-                break;
+        conversation = new Conversation(user);
+        Conversation existing = conversations.putIfAbsent(user, conversation);
 
-            case "user-positive-feeling":
-                replyIndex = random.nextInt(USER_POSITIVE_FEELING_RESPONSES.length);
-                generatedResponse += USER_POSITIVE_FEELING_RESPONSES[replyIndex] + " ";
-                break;
+        return existing != null ? existing : conversation;
+    }
 
-            case "user-negative-feeling":
-                replyIndex = random.nextInt(USER_NEGATIVE_FEELING_RESPONSES.length);
-                generatedResponse += USER_NEGATIVE_FEELING_RESPONSES[replyIndex] + " ";
-                break;
+    /**
+     * Forgets the quarter of the conversations that were least recently active.
+     */
+    private synchronized void forgetConversations() {
+        if (conversations.size() < MAX_CONVERSATIONS) {
+            return; // another thread has already made room
+        }
 
-            case "thanks":
-                replyIndex = random.nextInt(THANK_RESPONSES.length);
-                generatedResponse += THANK_RESPONSES[replyIndex] + " ";
+        long[] lastActive = new long[conversations.size()];
+        int count = 0;
+        for (Conversation conversation : conversations.values()) {
+            if (count == lastActive.length) {
                 break;
+            }
+            lastActive[count++] = conversation.getLastActive();
+        }
 
-            case "goodbye":
-                replyIndex = random.nextInt(GOODBYE_RESPONSES.length);
-                generatedResponse += GOODBYE_RESPONSES[replyIndex] + " ";
-                break;
+        Arrays.sort(lastActive, 0, count);
+        long cutOff = lastActive[count / 4];
 
-            default:
-                replyIndex = random.nextInt(UNKNOWN_RESPONSES.length);
-                generatedResponse = UNKNOWN_RESPONSES[replyIndex];
-                break;
+        Iterator<Conversation> iterator = conversations.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getLastActive() - cutOff <= 0) {
+                iterator.remove();
+            }
         }
-
-        return generatedResponse.trim();
     }
 
     /**
-     * Gets the next message the bot is yet to respond to and generates the response for that message.
-     * @return The final string containing the response that will be sent to the server.
+     * Takes the message and uses the bot's classifier to determine the type of message it received.
+     * @param message The message received from a user.
+     * @return The type of message the bot thinks it has received, as a string.
      */
-    public String getResponse() {
-        String nextMessage = botMessages.get(responsesGiven).toLowerCase();
-
-        String response = generateResponse(analyseMessage(nextMessage));
+    public String analyseMessage(String message) {
+        return classifier.classify(message);
+    }
 
-        return response;
+    /**
+     * Generates a response to a message from the bot's response table.
+     * @param messageType The type of message returned by analyseMessage()
+     * @param conversation The conversation with the user the response is for.
+     * @return The response the bot has generated for the message received.
+     */
+    public String generateResponse(String messageType, Conversation conversation) {
+        return responses.generate(messageType, conversation, random);
     }
 
     /**
      * Gets the output from the server and checks if the string contains "@bot". If so, the message is added to
-     * the ArrayList of messages it has received. This in turn will prompt a response from the client.
+     * the backlog of messages it has received. This in turn will prompt a response from the client.
      * If the server has been shut down with this client still connected, reading from the server returns null,
      * so if the client receives null from the server, it terminates the program with a message informing the user of this.
      */
     @Override
     public void processOutput() throws IOException {
         while (true) {
-            String serverResponse = super.serverInputReader.readLine();
+            String serverResponse = readServerLine();
 
             try {
                 if (!serverResponse.equals("null")) {
-                    System.out.println(serverResponse);
+                    display(serverResponse);
 
                     if (serverResponse.contains("@bot")) {
                         addMessage(serverResponse);
@@ -198,7 +294,7 @@ public class BotClient extends ChatClient {
                     throw new NullPointerException();
                 }
             } catch (NullPointerException e) {
-                System.out.println("The server has been shut down, as a result you have been disconnected.");
+                display("The server has been shut down, as a result you have been disconnected.");
                 stop();
                 break;
             }
@@ -206,65 +302,101 @@ public class BotClient extends ChatClient {
     }
 
     /**
-     * Initially creates and starts a Thread that handles the termination of this client when "quit" is entered into
-     * it's console. Then when it needs to respond to a message it then loops until all messages have been responded to
-     * and generates and sends a response for each one.
+     * Handles the termination of this client when "quit" is entered into it's console. Messages are answered by the
+     * worker threads as soon as they arrive, so this thread only needs to wait for the bot to be stopped.
      */
     @Override
     public void processInput() throws IOException {
-        Thread quitThread = new Thread() {
-            @Override
-            public void run() {
-                BufferedReader botConsoleInputReader = new BufferedReader(new InputStreamReader(System.in));
+        BufferedReader botConsoleInputReader = new BufferedReader(new InputStreamReader(System.in));
 
-                String serverInput = "";
-                while (!serverInput.toUpperCase().equals("QUIT")) {
-                    try {
-                        serverInput = botConsoleInputReader.readLine();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                }
+        String serverInput = "";
+        while (!serverInput.toUpperCase().equals("QUIT")) {
+            serverInput = botConsoleInputReader.readLine();
 
+            if (serverInput == null) {
+                // the bot has no console, so it keeps answering messages until the server shuts down
                 try {
-                    botConsoleInputReader.close();
-                    try {
-                        serverSocket.close();
-                    } catch (NullPointerException e) {
-                        e.printStackTrace();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                } finally {
-                    System.exit(0);
+                    workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+                } catch (InterruptedException e) {
+                    // stop the bot
                 }
+                serverInput = "QUIT";
             }
-        };
-        quitThread.start();
+        }
 
-        while (true) {
-            // if a response is required, respond to all messages that have no replies
-            if (getResponseRequired()) {
-                while (responsesGiven < botMessages.size()) {
-                    String botResponse = getResponse();
-                    serverOutputWriter.println("[" + getName() + "]: " + botResponse);
+        try {
+            botConsoleInputReader.close();
+            disconnect();
+        } finally {
+            workers.shutdownNow();
+            System.exit(0);
+        }
+    }
 
-                    responsesGiven++;
-                }
+    public static void main(String[] args) {
+        BotClient botClient = new BotClient(getAddressArg(args), getPortArg(args));
 
-                responseRequired = false;
+        // if a seed is given with -bcs, use it for the bot's random choices
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-bcs")) {
+                try {
+                    botClient.setSeed(Long.parseLong(args[i + 1]));
+                } catch (NumberFormatException e) {
+                    System.out.println("Seed parameter is not a number, the bot has not been seeded.");
+                }
             }
-            try {
-                ClientWriteThread.sleep(100);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+
+            // if a number of workers is given with -bcw, answer that many messages at once
+            if (args[i].equals("-bcw")) {
+                try {
+                    botClient.setWorkerCount(Math.max(1, Integer.parseInt(args[i + 1])));
+                } catch (NumberFormatException e) {
+                    System.out.println("Workers parameter is not a number, the default number of workers is used.");
+                }
             }
         }
-    }
 
-    public static void main(String[] args) {
-        BotClient botClient = new BotClient(getAddressArg(args), getPortArg(args));
+        IntentClassifier classifier = getClassifierArg(args);
+        if (classifier != null) {
+            botClient.setClassifier(classifier);
+        }
+
+        botClient.setTransport(getTransportArg(args));
+        botClient.setAutoReconnect(getReconnectArg(args));
         botClient.start();
     }
 
+    /**
+     * Used only on the instantiation of the client. Loads the phrase file given by the optional phrases argument,
+     * or the model file given by the optional model argument. If the file cannot be loaded, the user is told the
+     * problem and the built in phrases are used.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The classifier for the file, or null if no file is given or it cannot be loaded.
+     */
+    static IntentClassifier getClassifierArg(String[] args) {
+        IntentClassifier classifier = null;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-bcp")) {
+                try {
+                    classifier = IntentMatcher.load(Paths.get(args[i + 1]));
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Phrases parameter given with no value, built in phrases used.");
+                } catch (IOException e) {
+                    System.out.println("The phrase file could not be loaded, built in phrases used: " + e.getMessage());
+                }
+            } else if (args[i].equals("-bcm")) {
+                try {
+                    classifier = NaiveBayesClassifier.load(Paths.get(args[i + 1]));
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Model parameter given with no value, built in phrases used.");
+                } catch (IOException e) {
+                    System.out.println("The model file could not be loaded, built in phrases used: " + e.getMessage());
+                }
+            }
+        }
+
+        return classifier;
+    }
+
 }
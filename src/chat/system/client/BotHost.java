@@ -0,0 +1,373 @@
+package chat.system.client;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Runs many bots in one process. Each {@link BotPersona} has its own connection to the server, but every
+ * connection is carried by one {@link ChatTransport}, so all of them are served by a single thread, and every
+ * persona shares one classifier.
+ * <br></br>
+ * The personas are either numbered copies of the original chat bot, or read from a persona file. A persona file
+ * starts each persona with a "persona: name" line, followed by any of: "mention: text", the text a message must
+ * contain for the persona to answer (by default "@" and the name), "rate: number", the messages the persona can
+ * answer per second, and "intent: response" lines giving the persona's responses, which replace the original
+ * bot's responses for that intent. "question" and "unknown" give the questions the persona asks and its responses
+ * to messages it does not understand. Blank lines and lines starting with # are ignored.
+ */
+public class BotHost {
+
+    private static final double DEFAULT_RATE = 5; // messages each persona can answer per second
+    private static final long DISCONNECT_TIMEOUT = 5000; // milliseconds to wait for the bots to say they are leaving
+
+    private String address;
+    private int port;
+
+    private IntentClassifier classifier;
+    private List<BotPersona> personas;
+
+    private ChatTransport transport;
+    private ArrayList<Bot> bots;
+    private int openConnections; // guarded by this
+
+    private boolean running; // guarded by this
+
+    /**
+     * A persona's connection to the server. Only used on the transport thread.
+     */
+    private final class Bot implements MessageListener {
+
+        private final BotPersona persona;
+        private ChatConnection connection;
+        private boolean retryScheduled; // true if the bot will try to answer again once its rate limit allows
+
+        private Bot(BotPersona persona) {
+            this.persona = persona;
+        }
+
+        @Override
+        public void messageReceived(ChatConnection connection, String message) {
+            if (persona.addMessage(message)) {
+                answer(connection);
+            }
+        }
+
+        @Override
+        public void connectionClosed(ChatConnection connection) {
+            synchronized (BotHost.this) {
+                openConnections--;
+                BotHost.this.notifyAll();
+            }
+        }
+
+        /**
+         * Answers as many waiting messages as the rate limit allows, and if any are left, tries again once the
+         * limit allows another.
+         * @param connection The persona's connection.
+         */
+        private void answer(final ChatConnection connection) {
+            long now = System.nanoTime();
+
+            String response;
+            while ((response = persona.nextResponse(classifier, now)) != null) {
+                connection.send(response);
+            }
+
+            long wait = persona.getNanosUntilReady(now);
+            if (wait != Long.MAX_VALUE && !retryScheduled) {
+                retryScheduled = true;
+                transport.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        retryScheduled = false;
+                        if (connection.isOpen()) {
+                            answer(connection);
+                        }
+                    }
+                }, wait);
+            }
+        }
+
+    }
+
+    /**
+     * Constructor for a host that runs the given personas.
+     * @param address The host name of the server.
+     * @param port The port of the server.
+     * @param classifier Works out what messages are about, for every persona.
+     * @param personas The personas to run.
+     */
+    public BotHost(String address, int port, IntentClassifier classifier, List<BotPersona> personas) {
+        this.address = address;
+        this.port = port;
+        this.classifier = classifier;
+        this.personas = personas;
+
+        bots = new ArrayList<Bot>();
+    }
+
+    /**
+     * Connects every persona to the server and answers messages until the host is stopped or the server shuts
+     * down. Each persona announces that it has joined the chat, as a ChatClient does.
+     * @throws IOException If a persona cannot connect to the server.
+     */
+    public void run() throws IOException {
+        transport = new ChatTransport();
+
+        synchronized (this) {
+            running = true;
+        }
+
+        try {
+            for (BotPersona persona : personas) {
+                Bot bot = new Bot(persona);
+
+                synchronized (this) {
+                    openConnections++;
+                }
+                try {
+                    bot.connection = transport.connect(address, port, bot);
+                } catch (IOException e) {
+                    synchronized (this) {
+                        openConnections--;
+                    }
+                    throw e;
+                }
+                bots.add(bot);
+
+                bot.connection.send("User " + persona.getName() + " has joined the chat.");
+            }
+        } catch (IOException e) {
+            transport.close();
+            throw e;
+        }
+
+        System.out.println("Connected " + bots.size() + " bots to address: " + address + " and port: " + port);
+
+        synchronized (this) {
+            while (running && openConnections > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            if (openConnections == 0) {
+                System.out.println("The server has been shut down, as a result all bots have been disconnected.");
+            }
+        }
+
+        disconnect();
+    }
+
+    /**
+     * Stops the host, from any thread.
+     */
+    public synchronized void stop() {
+        running = false;
+        notifyAll();
+    }
+
+    /**
+     * Tells the server each persona that is still connected is leaving, waits for the connections to close, and
+     * stops the transport.
+     */
+    private void disconnect() {
+        for (Bot bot : bots) {
+            if (bot.connection.isOpen()) {
+                bot.connection.send("User " + bot.persona.getName() + " has left the chat.");
+                bot.connection.close();
+            }
+        }
+
+        synchronized (this) {
+            long deadline = System.currentTimeMillis() + DISCONNECT_TIMEOUT;
+            long wait;
+            while (openConnections > 0 && (wait = deadline - System.currentTimeMillis()) > 0) {
+                try {
+                    wait(wait);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+
+        transport.close();
+
+        long answered = 0;
+        for (BotPersona persona : personas) {
+            answered += persona.getAnswered();
+        }
+        System.out.println(personas.size() + " bots answered " + answered + " messages.");
+    }
+
+    /**
+     * Reads personas from a persona file, in the format described above.
+     * @param lines The lines of the persona file.
+     * @param seed The seed of the first persona's random choices, each following persona has the next seed.
+     * @return The personas, in the order they are given.
+     * @throws IllegalArgumentException If a line is not in the format described above.
+     */
+    public static List<BotPersona> parsePersonas(List<String> lines, long seed) {
+        ArrayList<BotPersona> personas = new ArrayList<BotPersona>();
+
+        String name = null;
+        String mention = null;
+        double rate = DEFAULT_RATE;
+        LinkedHashMap<String, List<String>> responses = new LinkedHashMap<String, List<String>>();
+
+        // a line past the end finishes the last persona
+        for (int i = 0; i <= lines.size(); i++) {
+            String line = i < lines.size() ? lines.get(i).trim() : "persona: ";
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not in the format \"key: value\".");
+            }
+
+            String key = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+
+            if (key.equals("persona")) {
+                if (name != null) {
+                    personas.add(new BotPersona(name, mention != null ? mention : "@" + name,
+                            ResponseTable.create(responses), rate, seed + personas.size()));
+                }
+
+                name = value;
+                mention = null;
+                rate = DEFAULT_RATE;
+                responses = new LinkedHashMap<String, List<String>>();
+            } else if (name == null) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " comes before the first persona.");
+            } else if (key.equals("mention")) {
+                mention = value;
+            } else if (key.equals("rate")) {
+                try {
+                    rate = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Line " + (i + 1) + " has a rate that is not a number.");
+                }
+            } else {
+                if (!responses.containsKey(key)) {
+                    responses.put(key, new ArrayList<String>());
+                }
+                responses.get(key).add(value);
+            }
+        }
+
+        return personas;
+    }
+
+    /**
+     * Used only on the instantiation of the host. Creates the personas given by the optional persona file argument,
+     * or the optional count argument.
+     * @param args The array of strings that were provided as command line arguments.
+     * @param seed The seed of the first persona's random choices.
+     * @return The personas to run.
+     * @throws IOException If the persona file cannot be read or is not in the right format.
+     */
+    private static List<BotPersona> getPersonasArg(String[] args, long seed) throws IOException {
+        int count = 1;
+
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-bhf")) {
+                Path path = Paths.get(args[i + 1]);
+                try {
+                    return parsePersonas(Files.readAllLines(path, StandardCharsets.UTF_8), seed);
+                } catch (IllegalArgumentException e) {
+                    throw new IOException(path + ": " + e.getMessage());
+                }
+            } else if (args[i].equals("-bhn")) {
+                try {
+                    count = Integer.parseInt(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bot count parameter is not a number.");
+                }
+            }
+        }
+
+        ArrayList<BotPersona> personas = new ArrayList<BotPersona>();
+        for (int i = 1; i <= count; i++) {
+            personas.add(new BotPersona("ChatBot" + i, "@bot", ResponseTable.DEFAULT, DEFAULT_RATE, seed + i - 1));
+        }
+
+        return personas;
+    }
+
+    /**
+     * Starts the host, e.g. java chat.system.client.BotHost -bhn 50, or with personas from a file,
+     * java chat.system.client.BotHost -bhf personas.txt. The host stops when "quit" is entered into its console.
+     * @param args The command line arguments.
+     */
+    public static void main(String[] args) {
+        long seed = System.nanoTime();
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-bcs")) {
+                try {
+                    seed = Long.parseLong(args[i + 1]);
+                } catch (NumberFormatException e) {
+                    System.out.println("Seed parameter is not a number, the bots have not been seeded.");
+                }
+            }
+        }
+
+        IntentClassifier classifier = BotClient.getClassifierArg(args);
+        if (classifier == null) {
+            classifier = BotClient.DEFAULT_INTENTS;
+        }
+
+        final BotHost host;
+        try {
+            host = new BotHost(ChatClient.getAddressArg(args), ChatClient.getPortArg(args), classifier,
+                    getPersonasArg(args, seed));
+        } catch (IOException e) {
+            System.out.println("The bots could not be created: " + e.getMessage());
+            return;
+        }
+
+        Thread quitThread = new Thread() {
+            @Override
+            public void run() {
+                BufferedReader consoleInputReader = new BufferedReader(new InputStreamReader(System.in));
+
+                String input = "";
+                try {
+                    while (input != null && !input.toUpperCase().equals("QUIT")) {
+                        input = consoleInputReader.readLine();
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+
+                // with no console the host runs until the server shuts down
+                if (input != null) {
+                    host.stop();
+                }
+            }
+        };
+        quitThread.setDaemon(true);
+        quitThread.start();
+
+        try {
+            host.run();
+        } catch (IOException e) {
+            System.out.println("The server you are trying to connect to is not running. The bots have not been connected.");
+        }
+    }
+
+}
@@ -0,0 +1,183 @@
+package chat.system.client;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One of the bots run by a {@link BotHost}: its name, the mention it answers to, its responses, and everything it
+ * remembers, kept apart from every other persona.
+ * <br></br>
+ * Each persona answers at most a given number of messages per second, with short bursts allowed up to the same
+ * number. Messages beyond that wait in the persona's own bounded backlog, so a persona that is flooded with
+ * mentions does not slow down any other persona. A persona is only used by the thread of the host's transport.
+ */
+public class BotPersona {
+
+    private static final int MAX_CONVERSATIONS = 1000; // the number of users the persona remembers
+    private static final int BACKLOG_CAPACITY = 100; // the number of messages that can wait to be answered
+
+    private String name;
+    private String mention; // the text, in lower case, a message must contain for the persona to answer it
+
+    private ResponseTable responses;
+    private Random random;
+
+    private MessageBacklog backlog; // messages waiting to be answered
+    private LinkedHashMap<String, Conversation> conversations; // by name, least recently active first
+
+    // the rate limit, a bucket of tokens that refills at rate tokens per second and holds at most burst tokens,
+    // answering a message takes one token
+    private double rate;
+    private double burst;
+    private double tokens;
+    private long lastRefill;
+
+    private long answered;
+
+    /**
+     * Constructor for a persona.
+     * @param name The name the persona joins the chat with.
+     * @param mention The text a message must contain for the persona to answer it, e.g. "@alice", case is ignored.
+     * @param responses The responses the persona gives.
+     * @param rate The number of messages the persona can answer per second.
+     * @param seed The seed of the persona's random choices.
+     */
+    public BotPersona(String name, String mention, ResponseTable responses, double rate, long seed) {
+        if (rate <= 0) {
+            throw new IllegalArgumentException("The rate of " + name + " must be more than 0.");
+        }
+
+        this.name = name;
+        this.mention = mention.toLowerCase();
+        this.responses = responses;
+        this.random = new Random(seed);
+
+        backlog = new MessageBacklog(BACKLOG_CAPACITY);
+        conversations = new LinkedHashMap<String, Conversation>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                return size() > MAX_CONVERSATIONS;
+            }
+        };
+
+        this.rate = rate;
+        burst = Math.max(1, rate);
+        tokens = burst;
+        lastRefill = System.nanoTime();
+    }
+
+    /**
+     * @return The name of the persona.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of messages the persona has answered.
+     */
+    public long getAnswered() {
+        return answered;
+    }
+
+    /**
+     * @return The backlog of messages waiting to be answered by the persona.
+     */
+    public MessageBacklog getBacklog() {
+        return backlog;
+    }
+
+    /**
+     * Adds a message to the persona's backlog if it mentions the persona and was not sent by it.
+     * @param message A message received from the server.
+     * @return True if the message mentions the persona.
+     */
+    public boolean addMessage(String message) {
+        if (message.startsWith("[" + name + "]:") || !containsMention(message)) {
+            return false;
+        }
+
+        backlog.add(message);
+        return true;
+    }
+
+    /**
+     * @param message A message received from the server.
+     * @return True if the message contains the persona's mention, ignoring case.
+     */
+    private boolean containsMention(String message) {
+        for (int i = 0; i + mention.length() <= message.length(); i++) {
+            if (message.regionMatches(true, i, mention, 0, mention.length())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Answers the oldest waiting message, if the rate limit allows it.
+     * @param classifier Works out what the message is about.
+     * @param now The current System.nanoTime().
+     * @return The line to send to the server, or null if there is no message to answer or the limit is reached.
+     */
+    public String nextResponse(IntentClassifier classifier, long now) {
+        refill(now);
+        if (tokens < 1) {
+            return null;
+        }
+
+        String message = backlog.poll();
+        if (message == null) {
+            return null;
+        }
+
+        tokens--;
+        answered++;
+
+        Conversation conversation = getConversation(BotClient.getSender(message));
+        conversation.addMessage();
+
+        return "[" + name + "]: " + responses.generate(classifier.classify(message), conversation, random);
+    }
+
+    /**
+     * @param now The current System.nanoTime().
+     * @return The nanoseconds until the persona can answer its next message, 0 if it can now, or Long.MAX_VALUE if
+     * it has no messages waiting.
+     */
+    public long getNanosUntilReady(long now) {
+        if (backlog.size() == 0) {
+            return Long.MAX_VALUE;
+        }
+
+        refill(now);
+        return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * 1e9);
+    }
+
+    /**
+     * Adds the tokens earned since the last refill.
+     * @param now The current System.nanoTime().
+     */
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - lastRefill) * rate / 1e9);
+        lastRefill = now;
+    }
+
+    /**
+     * @param user The name of a user.
+     * @return The conversation with the user, a new one if the persona does not remember them, in which case the
+     * least recently active user may be forgotten.
+     */
+    private Conversation getConversation(String user) {
+        Conversation conversation = conversations.get(user);
+        if (conversation == null) {
+            conversation = new Conversation(user);
+            conversations.put(user, conversation);
+        }
+
+        return conversation;
+    }
+
+}
@@ -6,6 +6,9 @@ import java.io.InputStreamReader;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Random;
 
 /**
  * Main class that connects and runs a client for the chat system.
@@ -14,11 +17,21 @@ public class ChatClient {
 
     protected static final String DEFAULT_ADDRESS = "localhost";
     protected static final int DEFAULT_PORT = 14001;
+    private static final long DISCONNECT_TIMEOUT = 5000; // milliseconds to wait for lines already sent to be written
+    private static final int SPOOL_CAPACITY = 100; // the number of lines kept to send once reconnected
+    private static final int SEARCH_RESULTS = 20; // the number of messages a search shows
+    private static final long RECONNECT_BASE_DELAY = 500; // milliseconds before the first attempt to reconnect
+    private static final long RECONNECT_MAX_DELAY = 30000; // the longest time between attempts to reconnect
 
     protected String address;
     protected int port;
 
-    protected Socket serverSocket; // server socket the client is connected to
+    protected Socket serverSocket; // server socket the client is connected to, null when using a transport
+
+    // the non-blocking transport the client is connected through, if it has been given one
+    protected ChatTransport transport;
+    protected ChatConnection connection;
+    private TransportReader transportReader;
 
     // threads used to handle the read and writing interactions with the server
     protected ClientReadThread readThread;
@@ -28,9 +41,24 @@ public class ChatClient {
     protected BufferedReader serverInputReader;
     protected PrintWriter serverOutputWriter;
 
+    // prints the messages received from the server to the console in batches
+    protected ConsoleRenderer renderer;
+
+    // keeps the messages received so they can be searched, if the client has been given a history file
+    protected MessageHistory history;
+
     // the clients chosen name
     protected String name;
 
+    // if the server goes down, the client can reconnect, keeping the lines sent meanwhile in a spool
+    private boolean autoReconnect;
+    private Random reconnectRandom;
+    private final Object connectionLock;
+    private boolean connected; // guarded by connectionLock
+    private ArrayDeque<String> spool; // guarded by connectionLock
+    private int spoolDropped; // guarded by connectionLock
+    private volatile boolean disconnecting; // true once the client has chosen to disconnect
+
     /**
      * Constructor to instantiate a new client. It assigns the address and port given as arguments to
      * the respective fields.
@@ -40,6 +68,10 @@ public class ChatClient {
     public ChatClient(String address, int port) {
         this.address = address;
         this.port = port;
+
+        reconnectRandom = new Random();
+        connectionLock = new Object();
+        spool = new ArrayDeque<String>();
     }
 
     /**
@@ -49,6 +81,39 @@ public class ChatClient {
         return serverSocket;
     }
 
+    /**
+     * @return The transport the client connects through, or null if it connects with its own socket.
+     */
+    public ChatTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Sets the non-blocking transport the client connects through instead of its own socket. One transport can be
+     * shared by many clients. Must be called before connecting.
+     * @param transport The transport, or null to connect with a socket.
+     */
+    public void setTransport(ChatTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * Sets the history the messages received are kept in and searched with the /search command.
+     * @param history The history, or null to keep no history.
+     */
+    public void setHistory(MessageHistory history) {
+        this.history = history;
+    }
+
+    /**
+     * Sets whether the client reconnects when the connection to the server is lost, rather than exiting. Lines sent
+     * while disconnected are kept, up to a limit, and sent once the client has reconnected.
+     * @param autoReconnect True to reconnect.
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
     /**
      * @return The object used to read the input from the clients console.
      */
@@ -109,6 +174,10 @@ public class ChatClient {
      * Terminates the client program.
      */
     public void stop() {
+        if (renderer != null) {
+            renderer.close();
+        }
+        closeHistory();
         System.exit(0);
     }
 
@@ -117,13 +186,7 @@ public class ChatClient {
      */
     public void connectToServer() {
         try {
-            serverSocket = new Socket(address, port);
-
-            // reads the output from the server (input into the client socket)
-            serverInputReader = new BufferedReader(new InputStreamReader(serverSocket.getInputStream()));
-
-            // used to write to the server
-            serverOutputWriter = new PrintWriter(getServerSocket().getOutputStream(), true);
+            openConnection();
         } catch (UnknownHostException e) {
             System.out.println("The address you have selected cannot be determined. You have not been connected.");
             System.out.println("If this is unexpected, ensure that the address you have selected is correct and try again.");
@@ -138,7 +201,12 @@ public class ChatClient {
         System.out.println("Connected to address: " + address + " and port: " + port);
 
         // broadcast to all clients that this client has connected
-        serverOutputWriter.println("User " + this.name + " has joined the chat.");
+        synchronized (connectionLock) {
+            serverOutputWriter.println("User " + this.name + " has joined the chat.");
+            connected = true;
+        }
+
+        renderer = new ConsoleRenderer(System.out);
 
         // instantiate and start the threads used to handle reading and writing from and to the server
         readThread = new ClientReadThread(this);
@@ -148,24 +216,298 @@ public class ChatClient {
         writeThread.start();
     }
 
+    /**
+     * Opens a connection to the server, through the transport if the client has one, and creates the reader and
+     * writer used to read from and write to it.
+     * @throws UnknownHostException If the address cannot be resolved.
+     * @throws IOException If the server cannot be connected to.
+     */
+    private void openConnection() throws IOException {
+        if (transport != null) {
+            // the transport reads and writes the connection, the read and write threads use it through a reader
+            // and a writer so they work the same as with a socket
+            transportReader = new TransportReader();
+            connection = transport.connect(address, port, transportReader);
+
+            serverInputReader = new BufferedReader(transportReader);
+            serverOutputWriter = new PrintWriter(new TransportWriter(connection), true);
+        } else {
+            serverSocket = new Socket(address, port);
+
+            // reads the output from the server (input into the client socket)
+            serverInputReader = new BufferedReader(new InputStreamReader(serverSocket.getInputStream()));
+
+            // used to write to the server
+            serverOutputWriter = new PrintWriter(getServerSocket().getOutputStream(), true);
+        }
+    }
+
+    /**
+     * Disconnects the client from the server. Over a transport, lines already sent are written first.
+     * @throws IOException If the socket cannot be closed.
+     */
+    public void disconnect() throws IOException {
+        synchronized (connectionLock) {
+            disconnecting = true;
+            connectionLock.notifyAll();
+        }
+
+        if (connection != null) {
+            transportReader.close();
+            connection.close();
+
+            try {
+                connection.awaitClose(DISCONNECT_TIMEOUT);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else if (serverSocket != null) {
+            serverSocket.close();
+        }
+
+        if (renderer != null) {
+            renderer.close();
+        }
+        closeHistory();
+    }
+
+    /**
+     * Closes the history file, if there is one, writing any messages not yet written.
+     */
+    private void closeHistory() {
+        if (history != null) {
+            try {
+                history.close();
+            } catch (IOException e) {
+                System.err.println("\nError: the history could not be saved: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Adds a message to the history, if there is one. If the history cannot be written to, the user is told and no
+     * more messages are kept.
+     * @param message The message received from the server.
+     */
+    private void recordHistory(String message) {
+        if (history == null || disconnecting) {
+            return;
+        }
+
+        try {
+            history.add(message);
+        } catch (IOException e) {
+            System.err.println("\nError: the history could not be written, no more messages will be kept: " + e.getMessage());
+            closeHistory();
+            history = null;
+        }
+    }
+
+    /**
+     * Searches the history for the messages containing every word of a query, and prints the most recent of them.
+     * @param query The words to search for.
+     */
+    private void searchHistory(String query) {
+        if (history == null) {
+            display("There is no history to search, start the client with -cch <HistoryFile> to keep one.");
+            return;
+        }
+        if (query.isEmpty()) {
+            display("Enter the words to search for after /search, e.g. /search meeting friday");
+            return;
+        }
+
+        long start = System.nanoTime();
+        int[] found = history.search(query);
+        long time = (System.nanoTime() - start) / 1000000;
+
+        int shown = Math.min(found.length, SEARCH_RESULTS);
+        display(found.length + " of " + history.getMessageCount() + " messages found for \"" + query + "\" in "
+                + time + " ms" + (shown < found.length ? ", showing the last " + shown + ":" : ":"));
+
+        try {
+            for (int i = found.length - shown; i < found.length; i++) {
+                display(history.getMessage(found[i]));
+            }
+        } catch (IOException e) {
+            System.err.println("\nError: the history could not be read: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Prints a message to the clients console. Messages are printed in batches by the renderer, so the thread
+     * reading from the server never waits for the console.
+     * @param message The message.
+     */
+    protected void display(String message) {
+        if (renderer != null) {
+            renderer.render(message);
+        } else {
+            System.out.println(message);
+        }
+    }
+
+    /**
+     * Sends a line to the server. If the client is reconnecting, the line is kept in the spool and sent once it has
+     * reconnected, and if the spool is full the oldest line in it is dropped.
+     * @param line The line to send.
+     */
+    protected void sendToServer(String line) {
+        synchronized (connectionLock) {
+            if (connected) {
+                serverOutputWriter.println(line);
+
+                // a failed socket or a closed transport connection does not send the line, so it is kept to send
+                // again
+                if (!serverOutputWriter.checkError() || !autoReconnect) {
+                    return;
+                }
+                connected = false;
+            }
+
+            if (spool.size() == SPOOL_CAPACITY) {
+                spool.poll();
+                spoolDropped++;
+            }
+            spool.add(line);
+        }
+    }
+
+    /**
+     * Reads the next line from the server. If the connection is lost and the client reconnects, the line is read
+     * from the new connection, so the caller never sees the connection change.
+     * @return The line, or null if the server has been shut down and the client does not reconnect.
+     * @throws IOException If the connection fails and the client does not reconnect.
+     */
+    protected String readServerLine() throws IOException {
+        while (true) {
+            String line;
+            try {
+                line = serverInputReader.readLine();
+            } catch (IOException e) {
+                if (!autoReconnect || disconnecting) {
+                    throw e;
+                }
+                line = null;
+            }
+
+            if (line != null || !autoReconnect || disconnecting || !reconnect()) {
+                return line;
+            }
+        }
+    }
+
+    /**
+     * Reconnects to the server after the connection has been lost, waiting longer after each failed attempt. The
+     * waits are randomised, so when a server restarts its clients do not all reconnect at the same moment. Once
+     * reconnected, the client announces that it has joined the chat and sends the spooled lines in one batch.
+     * @return True once reconnected, or false if the client disconnects before then.
+     */
+    private boolean reconnect() {
+        synchronized (connectionLock) {
+            connected = false;
+        }
+        closeConnection();
+
+        display("The connection to the server has been lost, reconnecting...");
+
+        for (int attempt = 0; ; attempt++) {
+            // the longest wait doubles after each attempt, and the wait is somewhere between half of it and all of it
+            long maxDelay = Math.min(RECONNECT_MAX_DELAY, RECONNECT_BASE_DELAY << Math.min(attempt, 16));
+            long delay = maxDelay / 2 + (long) (reconnectRandom.nextDouble() * maxDelay / 2);
+
+            synchronized (connectionLock) {
+                long end = System.currentTimeMillis() + delay;
+                long wait;
+                while (!disconnecting && (wait = end - System.currentTimeMillis()) > 0) {
+                    try {
+                        connectionLock.wait(wait);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                }
+
+                if (disconnecting) {
+                    return false;
+                }
+            }
+
+            try {
+                openConnection();
+            } catch (IOException e) {
+                continue;
+            }
+
+            synchronized (connectionLock) {
+                StringBuilder batch = new StringBuilder();
+                batch.append("User ").append(this.name).append(" has joined the chat.").append(System.lineSeparator());
+                for (String line : spool) {
+                    batch.append(line).append(System.lineSeparator());
+                }
+
+                serverOutputWriter.print(batch);
+                serverOutputWriter.flush();
+
+                // the new connection was lost straight away, so the spool is kept for the next attempt
+                if (serverOutputWriter.checkError()) {
+                    closeConnection();
+                    continue;
+                }
+
+                display("Reconnected to address: " + address + " and port: " + port);
+                if (!spool.isEmpty()) {
+                    display(spool.size() + " messages sent while disconnected have been sent.");
+                }
+                if (spoolDropped > 0) {
+                    display(spoolDropped + " messages sent while disconnected have been dropped.");
+                }
+
+                spool.clear();
+                spoolDropped = 0;
+                connected = true;
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Closes the connection that has been lost, before reconnecting.
+     */
+    private void closeConnection() {
+        if (connection != null) {
+            transportReader.close();
+            connection.close();
+        } else if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException e) {
+                // the connection has already failed
+            }
+        }
+    }
+
     /**
      * Gets the output from the server and prints it to the clients console.
      * If the server has been shut down with this client still connected, reading from the server returns null,
      * so if the client receives null from the server, it terminates the program with a message informing the user of this.
+     * A client that reconnects carries on reading once it has reconnected instead.
      * @throws IOException
      */
     public void processOutput() throws IOException {
         while (true) {
-            String serverResponse = serverInputReader.readLine();
+            String serverResponse = readServerLine();
 
             try {
                 if (!serverResponse.equals("null")) {
-                    System.out.println(serverResponse);
+                    display(serverResponse);
+                    recordHistory(serverResponse);
                 } else {
                     throw new NullPointerException();
                 }
             } catch (NullPointerException e) {
-                System.out.println("The server has been shut down, as a result you have been disconnected.");
+                display("The server has been shut down, as a result you have been disconnected.");
                 stop();
                 break;
             }
@@ -175,7 +517,8 @@ public class ChatClient {
     /**
      * Gets the users input from the console and sends it to the server.
      * If the client sends "quit" to the server, the server disconnects the client and a message is sent
-     * to all connected clients saying that this user has left.
+     * to all connected clients saying that this user has left. Input starting with "/search" searches the history
+     * instead of being sent.
      * @throws IOException
      */
     public void processInput() throws IOException {
@@ -183,11 +526,16 @@ public class ChatClient {
             String userInput = clientInputReader.readLine();
 
             if (userInput.toUpperCase().equals("QUIT")) {
-                serverOutputWriter.println("User " + this.name + " has left the chat.");
+                sendToServer("User " + this.name + " has left the chat.");
                 break;
             }
 
-            serverOutputWriter.println("["+ this.name + "]: " + userInput);
+            if (userInput.startsWith("/search")) {
+                searchHistory(userInput.substring("/search".length()).trim());
+                continue;
+            }
+
+            sendToServer("["+ this.name + "]: " + userInput);
         }
     }
 
@@ -274,8 +622,67 @@ public class ChatClient {
         return port;
     }
 
+    /**
+     * Used only on the instantiation of the client. Checks for the optional flag that connects the client through
+     * a non-blocking transport rather than its own socket.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return A new transport if the flag is given, otherwise null.
+     */
+    protected static ChatTransport getTransportArg(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-ccn")) {
+                try {
+                    return new ChatTransport();
+                } catch (IOException e) {
+                    System.err.println("\nError: the transport could not be started, using a socket: " + e.getMessage());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Used only on the instantiation of the client. Checks for the optional flag that has the client reconnect when
+     * the connection to the server is lost.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return True if the flag is given.
+     */
+    protected static boolean getReconnectArg(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-ccr")) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Used only on the instantiation of the client. Opens the history file given by the optional history argument.
+     * If the file cannot be opened, the user is told the problem and no history is kept.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The history, or null if no file is given or it cannot be opened.
+     */
+    protected static MessageHistory getHistoryArg(String[] args) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (args[i].equals("-cch")) {
+                try {
+                    return new MessageHistory(Paths.get(args[i + 1]));
+                } catch (IOException e) {
+                    System.out.println("The history file could not be opened, no history will be kept: " + e.getMessage());
+                }
+            }
+        }
+
+        return null;
+    }
+
     public static void main(String[] args) {
         ChatClient chatClient = new ChatClient(getAddressArg(args), getPortArg(args));
+        chatClient.setHistory(getHistoryArg(args));
+        chatClient.setTransport(getTransportArg(args));
+        chatClient.setAutoReconnect(getReconnectArg(args));
         chatClient.start();
     }
 
@@ -0,0 +1,260 @@
+package chat.system.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A connection to a chat server carried by a {@link ChatTransport}. Lines are sent from any thread and written by
+ * the transport thread, and lines received are passed to the connection's {@link MessageListener}.
+ */
+public class ChatConnection {
+
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_LINE_LENGTH = 1 << 20; // longer lines are dropped
+
+    private ChatTransport transport;
+    private SocketChannel channel;
+    private MessageListener listener;
+
+    // only used on the transport thread
+    private SelectionKey key; // null until the channel is registered with the transport's selector
+    private ByteBuffer input; // bytes read that do not yet make a whole line
+
+    private ConcurrentLinkedQueue<ByteBuffer> output; // lines waiting to be written
+    private AtomicBoolean flushQueued; // true if a flush is waiting to run on the transport thread
+    private Runnable flushTask;
+
+    private volatile boolean closing; // true once close() has been called, the connection closes once output is written
+    private volatile boolean closed;
+    private CountDownLatch closedLatch;
+
+    /**
+     * Constructor for a connection, used by {@link ChatTransport#connect(String, int, MessageListener)}.
+     * @param transport the transport carrying the connection.
+     * @param channel the connected, non-blocking channel.
+     * @param listener receives the lines that arrive on the connection.
+     */
+    ChatConnection(ChatTransport transport, SocketChannel channel, MessageListener listener) {
+        this.transport = transport;
+        this.channel = channel;
+        this.listener = listener;
+
+        input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        output = new ConcurrentLinkedQueue<ByteBuffer>();
+        flushQueued = new AtomicBoolean();
+        closedLatch = new CountDownLatch(1);
+
+        flushTask = new Runnable() {
+            @Override
+            public void run() {
+                flushQueued.set(false);
+                flush();
+            }
+        };
+    }
+
+    /**
+     * @return The transport carrying the connection.
+     */
+    public ChatTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * @return True until the connection has closed.
+     */
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    /**
+     * Sends a line to the server without waiting for it to be written. Lines are written in the order they are sent.
+     * @param line the line, a line separator is added.
+     * @return True if the line was queued to be written, false if the connection is closed or being closed, in which
+     * case the line is not sent.
+     */
+    public boolean send(String line) {
+        if (closing || closed) {
+            return false;
+        }
+
+        output.add(ByteBuffer.wrap((line + System.lineSeparator()).getBytes(transport.getCharset())));
+        requestFlush();
+        return true;
+    }
+
+    /**
+     * Closes the connection once every line already sent has been written.
+     */
+    public void close() {
+        closing = true;
+        requestFlush();
+    }
+
+    /**
+     * Waits for the connection to close, so the lines sent before {@link #close()} are written before, for example,
+     * the program exits. Must not be called on the transport thread.
+     * @param timeout the longest time to wait, in milliseconds.
+     * @return True if the connection has closed.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public boolean awaitClose(long timeout) throws InterruptedException {
+        return closedLatch.await(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes the waiting lines straight away on the transport thread, or has the transport thread write them.
+     */
+    private void requestFlush() {
+        if (transport.inTransportThread()) {
+            flush();
+        } else if (flushQueued.compareAndSet(false, true)) {
+            transport.execute(flushTask);
+        }
+    }
+
+    /**
+     * Registers the channel with the transport's selector, on the transport thread.
+     * @param selector the transport's selector.
+     */
+    void register(Selector selector) {
+        try {
+            key = channel.register(selector, SelectionKey.OP_READ, this);
+            flush();
+        } catch (ClosedChannelException e) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Reads from or writes to the connection once the selector says it is ready, on the transport thread.
+     * @param readyKey the connection's key.
+     */
+    void handle(SelectionKey readyKey) {
+        try {
+            if (readyKey.isReadable()) {
+                read();
+            }
+            if (readyKey.isValid() && readyKey.isWritable()) {
+                write();
+            }
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Writes the waiting lines, on the transport thread, closing the connection if it fails.
+     */
+    private void flush() {
+        if (key == null || closed) {
+            return;
+        }
+
+        try {
+            write();
+        } catch (IOException e) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Writes the waiting lines until they are all written or the connection cannot take any more, in which case
+     * the selector is asked to say when it can. Once everything is written, a connection being closed is closed.
+     * @throws IOException If the connection cannot be written to.
+     */
+    private void write() throws IOException {
+        ByteBuffer buffer;
+        while ((buffer = output.peek()) != null) {
+            channel.write(buffer);
+
+            if (buffer.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+
+            output.poll();
+        }
+
+        key.interestOps(SelectionKey.OP_READ);
+
+        if (closing) {
+            closeNow();
+        }
+    }
+
+    /**
+     * Reads what is available and passes each whole line to the listener.
+     * @throws IOException If the connection cannot be read.
+     */
+    private void read() throws IOException {
+        if (channel.read(input) < 0) {
+            closeNow();
+            return;
+        }
+
+        input.flip();
+
+        int lineStart = 0;
+        for (int i = 0; i < input.limit(); i++) {
+            if (input.get(i) == '\n') {
+                int lineEnd = i > lineStart && input.get(i - 1) == '\r' ? i - 1 : i;
+                String line = new String(input.array(), lineStart, lineEnd - lineStart, transport.getCharset());
+                lineStart = i + 1;
+
+                try {
+                    listener.messageReceived(this, line);
+                } catch (RuntimeException e) {
+                    System.err.println("\nError: " + e);
+                }
+            }
+        }
+
+        input.position(lineStart);
+        input.compact();
+
+        // a line that does not fit is either given a bigger buffer or, if it is far too long, dropped
+        if (!input.hasRemaining()) {
+            if (input.capacity() < MAX_LINE_LENGTH) {
+                ByteBuffer bigger = ByteBuffer.allocate(input.capacity() * 2);
+                input.flip();
+                bigger.put(input);
+                input = bigger;
+            } else {
+                input.clear();
+            }
+        }
+    }
+
+    /**
+     * Closes the channel and tells the listener, on the transport thread.
+     */
+    private void closeNow() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("\nError: " + e.getMessage());
+        }
+        closedLatch.countDown();
+
+        try {
+            listener.connectionClosed(this);
+        } catch (RuntimeException e) {
+            System.err.println("\nError: " + e);
+        }
+    }
+
+}
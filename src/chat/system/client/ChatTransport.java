@@ -0,0 +1,241 @@
+package chat.system.client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Carries any number of connections to chat servers on a single thread, using non-blocking sockets and a selector.
+ * <br></br>
+ * Each connection is a {@link ChatConnection}. Lines can be sent on a connection from any thread without waiting
+ * for them to be written, and the lines received are passed to the connection's {@link MessageListener} on the
+ * transport's thread. Tasks can also be run on the transport's thread, straight away or after a delay, so code
+ * that only runs on that thread never needs locking.
+ */
+public class ChatTransport implements Closeable {
+
+    private Selector selector;
+    private Charset charset; // the server reads and writes lines in the platform charset
+
+    private ConcurrentLinkedQueue<Runnable> tasks; // tasks waiting to run on the transport thread
+    private PriorityQueue<ScheduledTask> scheduledTasks; // only used on the transport thread
+    private long scheduledCount; // keeps tasks scheduled for the same time in order
+
+    private Thread thread;
+    private volatile boolean running;
+
+    /**
+     * A task to run on the transport thread once its time has come.
+     */
+    private static final class ScheduledTask implements Comparable<ScheduledTask> {
+
+        private final long time; // the System.nanoTime() the task runs at
+        private final long sequence;
+        private final Runnable task;
+
+        private ScheduledTask(long time, long sequence, Runnable task) {
+            this.time = time;
+            this.sequence = sequence;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            int comparison = Long.compare(time - other.time, 0);
+            return comparison != 0 ? comparison : Long.compare(sequence, other.sequence);
+        }
+
+    }
+
+    /**
+     * Constructor for a transport, starts its thread.
+     * @throws IOException If the selector cannot be opened.
+     */
+    public ChatTransport() throws IOException {
+        selector = Selector.open();
+        charset = Charset.defaultCharset();
+
+        tasks = new ConcurrentLinkedQueue<Runnable>();
+        scheduledTasks = new PriorityQueue<ScheduledTask>();
+
+        running = true;
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runEventLoop();
+            }
+        }, "ChatTransport");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The charset lines are encoded in.
+     */
+    Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * @return True if the calling thread is the transport's thread.
+     */
+    public boolean inTransportThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Connects to a server. The connection is made before returning, so a server that is not running is reported
+     * straight away.
+     * @param address the host name of the server.
+     * @param port the port of the server.
+     * @param listener receives the lines that arrive on the connection.
+     * @return The connection.
+     * @throws UnknownHostException If the address cannot be resolved.
+     * @throws IOException If the server cannot be connected to.
+     */
+    public ChatConnection connect(String address, int port, MessageListener listener) throws IOException {
+        InetSocketAddress socketAddress = new InetSocketAddress(address, port);
+        if (socketAddress.isUnresolved()) {
+            throw new UnknownHostException(address);
+        }
+
+        SocketChannel channel = SocketChannel.open(socketAddress);
+        channel.configureBlocking(false);
+
+        final ChatConnection connection = new ChatConnection(this, channel, listener);
+
+        // channels can only be registered without blocking on the thread that uses the selector
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                connection.register(selector);
+            }
+        });
+
+        return connection;
+    }
+
+    /**
+     * Runs a task on the transport thread as soon as possible.
+     * @param task the task.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+
+        if (!inTransportThread()) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Runs a task on the transport thread after a delay.
+     * @param task the task.
+     * @param delay the delay in nanoseconds.
+     */
+    public void schedule(final Runnable task, long delay) {
+        final long time = System.nanoTime() + delay;
+
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                scheduledTasks.add(new ScheduledTask(time, scheduledCount++, task));
+            }
+        });
+    }
+
+    /**
+     * Stops the transport thread and closes every connection that is still open, without telling their listeners.
+     */
+    @Override
+    public void close() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Runs tasks, waits for connections to be ready and reads from and writes to them, until the transport is
+     * closed.
+     */
+    private void runEventLoop() {
+        try {
+            while (running) {
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    runTask(task);
+                }
+
+                long wait = runScheduledTasks();
+
+                if (!tasks.isEmpty()) {
+                    selector.selectNow();
+                } else if (wait > 0) {
+                    selector.select(Math.max(1, (wait + 999999) / 1000000));
+                } else {
+                    selector.select();
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    ((ChatConnection) key.attachment()).handle(key);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("\nError: the chat transport has failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                try {
+                    key.channel().close();
+                } catch (IOException e) {
+                    // closing anyway
+                }
+            }
+
+            try {
+                selector.close();
+            } catch (IOException e) {
+                System.err.println("\nError: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs every scheduled task whose time has come.
+     * @return The nanoseconds until the next scheduled task, or 0 if there are none.
+     */
+    private long runScheduledTasks() {
+        while (!scheduledTasks.isEmpty()) {
+            long wait = scheduledTasks.peek().time - System.nanoTime();
+            if (wait > 0) {
+                return wait;
+            }
+
+            runTask(scheduledTasks.poll().task);
+        }
+
+        return 0;
+    }
+
+    /**
+     * Runs a task, so a task that fails does not stop the transport.
+     * @param task the task.
+     */
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            System.err.println("\nError: " + e);
+        }
+    }
+
+}
@@ -30,7 +30,7 @@ public class ClientReadThread extends Thread {
             try {
                 // if there are any exceptions thrown, close the I/O buffer and disconnect the client from the server
                 client.getServerInputReader().close();
-                client.getServerSocket().close();
+                client.disconnect();
             } catch (IOException e1) {
                 e1.printStackTrace();
             }
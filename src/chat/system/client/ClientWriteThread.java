@@ -30,7 +30,7 @@ public class ClientWriteThread extends Thread {
                 // once the client no longer needs to write to the server, close the I/O buffer and disconnect
                 // the client from the server.
                 client.getClientInputReader().close();
-                client.getServerSocket().close();
+                client.disconnect();
             } catch (IOException e) {
                 e.printStackTrace();
             }
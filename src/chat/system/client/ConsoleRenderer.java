@@ -0,0 +1,181 @@
+package chat.system.client;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Prints the messages a client receives to its console in batches, so a client in a busy chat does not fall behind
+ * the server while it waits for the console.
+ * <br></br>
+ * Messages are handed over without waiting and printed by the renderer's own thread, at most a set number of times
+ * a second, through one buffered stream that is flushed once per batch. If more messages arrive between two batches
+ * than can usefully be read, only the most recent are kept, and the older ones are counted and replaced with a single
+ * "... N earlier messages" line printed before them.
+ */
+public class ConsoleRenderer implements Closeable {
+
+    private static final int FRAMES_PER_SECOND = 30;
+    private static final int MAX_FRAME_LINES = 100; // the messages printed in one batch, older ones are counted
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Writer output;
+
+    private final Object lock; // guards pending, pendingStart, pendingCount, skipped and closed
+    private String[] pending; // ring buffer of the most recent messages waiting for the next batch
+    private int pendingStart; // index of the oldest message in pending
+    private int pendingCount;
+    private int skipped; // older messages pushed out of the next batch by newer ones
+    private boolean closed;
+
+    private final Object renderLock; // held while a batch is printed
+    private String[] rendering; // the batch being printed
+
+    private Thread thread;
+
+    /**
+     * Constructor for a renderer, starts its thread.
+     * @param console The stream to print to, usually System.out.
+     */
+    public ConsoleRenderer(OutputStream console) {
+        output = new BufferedWriter(new OutputStreamWriter(console), BUFFER_SIZE);
+
+        lock = new Object();
+        pending = new String[MAX_FRAME_LINES];
+        renderLock = new Object();
+        rendering = new String[MAX_FRAME_LINES];
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runRenderLoop();
+            }
+        }, "ConsoleRenderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Adds a message to the next batch, without waiting for it to be printed. If the batch is full the oldest message
+     * in it is dropped and counted instead.
+     * @param message The message.
+     */
+    public void render(String message) {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+
+            if (pendingCount < MAX_FRAME_LINES) {
+                pending[(pendingStart + pendingCount) % MAX_FRAME_LINES] = message;
+                pendingCount++;
+
+                // the thread only needs waking for the first message of a batch
+                if (pendingCount == 1) {
+                    lock.notify();
+                }
+            } else {
+                // overwrite the oldest message, keeping the most recent ones
+                pending[pendingStart] = message;
+                pendingStart = (pendingStart + 1) % MAX_FRAME_LINES;
+                skipped++;
+            }
+        }
+    }
+
+    /**
+     * Prints the messages still waiting and stops the renderer's thread. Messages rendered afterwards are ignored.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+
+        renderFrame();
+    }
+
+    /**
+     * Waits for messages and prints them in batches, leaving at least a frame between the start of one batch and
+     * the start of the next so that messages arriving meanwhile are printed together.
+     */
+    private void runRenderLoop() {
+        long frameInterval = 1000000000L / FRAMES_PER_SECOND;
+        long nextFrame = System.nanoTime();
+
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (!closed && pendingCount == 0) {
+                        lock.wait();
+                    }
+
+                    if (closed) {
+                        return;
+                    }
+                }
+
+                long wait = nextFrame - System.nanoTime();
+                if (wait > 0) {
+                    Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+                }
+
+                nextFrame = System.nanoTime() + frameInterval;
+                renderFrame();
+            }
+        } catch (InterruptedException e) {
+            // stop rendering
+        }
+    }
+
+    /**
+     * Prints the number of older messages that did not fit if there are any, followed by the messages waiting, and
+     * flushes them.
+     */
+    private void renderFrame() {
+        synchronized (renderLock) {
+            int start;
+            int count;
+            int earlier;
+            synchronized (lock) {
+                String[] batch = pending;
+                pending = rendering;
+                rendering = batch;
+
+                start = pendingStart;
+                count = pendingCount;
+                pendingStart = 0;
+                pendingCount = 0;
+
+                earlier = skipped;
+                skipped = 0;
+            }
+
+            try {
+                if (earlier > 0) {
+                    output.write("... " + earlier + (earlier == 1 ? " earlier message" : " earlier messages"));
+                    output.write(System.lineSeparator());
+                }
+
+                for (int i = 0; i < count; i++) {
+                    output.write(rendering[(start + i) % MAX_FRAME_LINES]);
+                    output.write(System.lineSeparator());
+                }
+
+                output.flush();
+            } catch (IOException e) {
+                System.err.println("\nError: " + e.getMessage());
+            }
+
+            // release the printed messages
+            for (int i = 0; i < count; i++) {
+                rendering[(start + i) % MAX_FRAME_LINES] = null;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package chat.system.client;
+
+/**
+ * What the bot remembers about its conversation with one user. A user's messages can be answered on different
+ * threads at the same time, so every method is synchronized.
+ */
+public class Conversation {
+
+    private final String user;
+
+    private boolean questionAsked; // true if the bot has asked the user how they are and not yet had an answer
+    private int messages; // the number of messages the user has sent the bot
+
+    private volatile long lastActive; // the System.nanoTime() of the user's last message
+
+    /**
+     * Constructor for the conversation with a user.
+     * @param user The name of the user.
+     */
+    public Conversation(String user) {
+        this.user = user;
+
+        lastActive = System.nanoTime();
+    }
+
+    /**
+     * @return The name of the user.
+     */
+    public String getUser() {
+        return user;
+    }
+
+    /**
+     * Notes that the user has sent the bot another message.
+     */
+    public synchronized void addMessage() {
+        messages++;
+        lastActive = System.nanoTime();
+    }
+
+    /**
+     * @return The number of messages the user has sent the bot.
+     */
+    public synchronized int getMessages() {
+        return messages;
+    }
+
+    /**
+     * @return The System.nanoTime() of the user's last message.
+     */
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    /**
+     * Called when the bot wants to ask the user how they are, so the user is not asked again before answering.
+     * @return True if the bot can ask, false if it is still waiting for the answer to the last time it asked.
+     */
+    public synchronized boolean askQuestion() {
+        if (questionAsked) {
+            return false;
+        }
+
+        questionAsked = true;
+        return true;
+    }
+
+    /**
+     * Called when the user tells the bot how they feel, answering any question the bot asked.
+     */
+    public synchronized void answerQuestion() {
+        questionAsked = false;
+    }
+
+}
@@ -3,20 +3,45 @@ package chat.system.client;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
 
+import chat.system.game.main.ActionLog;
 import chat.system.game.main.GameLogic;
+import chat.system.game.main.Leaderboard;
+import chat.system.game.main.PlayerScore;
+import chat.system.game.main.SnapshotStore;
+import chat.system.game.map.MapFile;
+import chat.system.game.map.Terrain;
 
 /**
  * Subclass of ChatClient that can be used to play the game.
  */
 public class GameClient extends ChatClient {
 
+    private static final int SNAPSHOT_INTERVAL = 10; // the number of turns between saves of the game
+
+    private static final int LEADERBOARD_SIZE = 10; // the number of players shown by LEADERBOARD
+
     private boolean gameRequested;
 
     private String playerRequested; // name of player that requested a new game
 
-    private GameLogic activeGame;
-    private String activePlayer;
+    private Terrain terrain; // the terrain every game is played on
+
+    // only changed by the game loop, the read thread just looks at them to pass on the player's moves
+    private volatile GameLogic activeGame;
+    private volatile String activePlayer;
+    private volatile String leftPlayer; // the active player, once they have left the chat mid-game
+    private long activeGameStart; // the time the active game started, in milliseconds
+
+    private Leaderboard leaderboard;
+
+    private Path actionLogDirectory; // the directory games are recorded to, null if games are not recorded
+    private ActionLog activeLog;
+
+    private SnapshotStore snapshotStore; // where games are saved so players can resume them, null if not saved
 
     private Boolean playerMoved; // set to true when the player makes a move in the game
     private String playerMove; // the move the player made
@@ -31,6 +56,10 @@ public class GameClient extends ChatClient {
 
         gameRequested = false;
         playerMoved = false;
+
+        terrain = Terrain.DEFAULT;
+
+        leaderboard = new Leaderboard();
     }
 
     /**
@@ -61,6 +90,38 @@ public class GameClient extends ChatClient {
         return playerMove;
     }
 
+    /**
+     * Sets the terrain that new games will be played on.
+     * @param terrain The terrain of the map for new games.
+     */
+    public void setTerrain(Terrain terrain) {
+        this.terrain = terrain;
+    }
+
+    /**
+     * Sets the directory every game is recorded to, so it can be replayed later.
+     * @param actionLogDirectory The directory the action logs are written to, or null to not record games.
+     */
+    public void setActionLogDirectory(Path actionLogDirectory) {
+        this.actionLogDirectory = actionLogDirectory;
+    }
+
+    /**
+     * Sets the leaderboard the result of every game is recorded on.
+     * @param leaderboard The leaderboard, e.g. one saved to a file.
+     */
+    public void setLeaderboard(Leaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    /**
+     * Sets the store games are saved to, so a player can resume their game after disconnecting.
+     * @param snapshotStore The store games are saved to, or null to not save games.
+     */
+    public void setSnapshotStore(SnapshotStore snapshotStore) {
+        this.snapshotStore = snapshotStore;
+    }
+
     /**
      * Sets the value of gameRequested to the value of the argument provided.
      * @param gameRequested The new value of gameRequested.
@@ -124,17 +185,21 @@ public class GameClient extends ChatClient {
     /**
      * Gets the output from the server. If a user has requested to play the game, the necessary field values are set.
      * Otherwise, if another message is received, the message is trimmed and the content is set as the move the player
-     * will make. The players game is ended if they leave the chat mid-game. If the server has been shut down with this
-     * client still connected, reading from the server returns null, so if the client receives null from the server,
-     * it terminates the program with a message informing the user of this.
+     * will make. If the player leaves the chat mid-game, the game loop is told to save and end their game. If the
+     * server has been shut down with this client still connected, reading from the server returns null, so if the
+     * client receives null from the server, it terminates the program with a message informing the user of this.
      */
     @Override
     public void processOutput() throws IOException {
         while (true) {
-            String serverResponse = super.serverInputReader.readLine();
+            String serverResponse = readServerLine();
             try {
                 if (!serverResponse.equals("null")) {
-                    System.out.println(serverResponse);
+                    display(serverResponse);
+
+                    // the game loop may end the game at any time, so the same game and player are used throughout
+                    GameLogic game = activeGame;
+                    String player = activePlayer;
 
                     if (serverResponse.startsWith("[")) {
                         // get the name of the client of the message received
@@ -147,14 +212,19 @@ public class GameClient extends ChatClient {
                             setPlayerRequested(playerName);
                         } else {
                             if (!this.name.equals(playerName)) {
-                                // if there is someone currently playing the game and a message is received, from the
-                                // player, that is of the format of a game command, i.e. all uppercase string,
-                                // their message is processed and stored as the move for their turn
-                                if (activeGame != null && activePlayer.equals(playerName)) {
-                                    int messageStartIndex = closeBracketIndex + "]:".length();
-                                    String playerMessageContent = serverResponse.substring(messageStartIndex).trim();
-
-                                    if (activeGame.gameRunning() && isStringUppercase(playerMessageContent)) {
+                                int messageStartIndex = Math.min(closeBracketIndex + "]:".length(), serverResponse.length());
+                                String playerMessageContent = serverResponse.substring(messageStartIndex).trim();
+
+                                // leaderboard queries are answered on this thread, so they never wait for a game turn
+                                if (playerMessageContent.equals("LEADERBOARD")) {
+                                    sendLeaderboard();
+                                } else if (playerMessageContent.equals("RANK")) {
+                                    sendRank(playerName);
+                                } else if (game != null && playerName.equals(player)) {
+                                    // if there is someone currently playing the game and a message is received, from
+                                    // the player, that is of the format of a game command, i.e. all uppercase string,
+                                    // their message is processed and stored as the move for their turn
+                                    if (game.gameRunning() && isStringUppercase(playerMessageContent)) {
                                         setPlayerMove(playerMessageContent);
                                         setPlayerMoved(true);
                                     }
@@ -163,14 +233,15 @@ public class GameClient extends ChatClient {
                         }
                     }
 
-                    if (serverResponse.equals(activePlayer +  " has left the chat.")) {
-                        endActiveGame();
+                    // the game loop saves and ends the game, as it may be in the middle of the player's turn
+                    if (player != null && serverResponse.equals("User " + player +  " has left the chat.")) {
+                        leftPlayer = player;
                     }
                 } else {
                     throw new NullPointerException();
                 }
             } catch (NullPointerException e) {
-                System.out.println("The server has been shut down, as a result you have been disconnected.");
+                display("The server has been shut down, as a result you have been disconnected.");
                 stop();
                 break;
             }
@@ -202,7 +273,7 @@ public class GameClient extends ChatClient {
                 try {
                     botConsoleInputReader.close();
                     try {
-                        serverSocket.close();
+                        disconnect();
                     } catch (NullPointerException e) {
                         e.printStackTrace();
                     }
@@ -216,20 +287,45 @@ public class GameClient extends ChatClient {
         quitThread.start();
 
         while (true) {
+            String left = leftPlayer;
+            if (left != null) {
+                leftPlayer = null;
+
+                if (left.equals(activePlayer)) {
+                    // save the game so the player can carry on when they return
+                    if (snapshotStore != null) {
+                        snapshotStore.save(activePlayer, activeGame.createSnapshot());
+                    }
+
+                    setPlayerMoved(false);
+                    endActiveGame();
+                }
+            }
+
             if (getGameRequested()) {
                 // if there is no one currently playing the game, tell the player that they are now playing the game
                 // and start a new game.
                 // if someone is already playing the game, inform the user that they must wait until
                 // the other user has finished playing the game.
                 if (activeGame == null && activePlayer == null) {
-                    String gameClientResponse = "Player " +  getPlayerRequested() + " has been spawned.";
-                    serverOutputWriter.println("[" + this.name + "]: " + gameClientResponse);
+                    String gameClientResponse = "Player " +  getPlayerRequested() + " has resumed their game and been spawned.";
+
+                    GameLogic game = resumeSavedGame(getPlayerRequested());
+                    if (game == null) {
+                        game = new GameLogic(terrain);
+                        gameClientResponse = "Player " +  getPlayerRequested() + " has been spawned.";
+                    }
+
+                    sendToServer("[" + this.name + "]: " + gameClientResponse);
                     setGameRequested(false);
 
-                    startActiveGame(new GameLogic(), getPlayerRequested());
+                    startActiveGame(game, getPlayerRequested());
+
+                    // show any spectators the start of the game
+                    sendToServer("[" + this.name + "]: " + activeGame.getSpectatorFrame());
                 } else {
                     String m = " is currently playing the game, please wait for their game to finish and try again.";
-                    serverOutputWriter.println("[" + this.name + "]: " + activePlayer + m);
+                    sendToServer("[" + this.name + "]: " + activePlayer + m);
                     setGameRequested(false);
                 }
             }
@@ -237,13 +333,35 @@ public class GameClient extends ChatClient {
             if (getPlayerMoved()) {
                 // get the outcome of the players move from the GameLogic object
                 String moveResult = activeGame.processAction(getPlayerMove());
-                serverOutputWriter.println("[" + this.name + "]: " + moveResult);
+                sendToServer("[" + this.name + "]: " + moveResult);
                 setPlayerMoved(false);
 
                 if (moveResult.contains("caught") || moveResult.contains("WIN") || moveResult.contains("LOSE")) {
                     String gameClientResponse = "Player " +  this.activePlayer + " has exited.";
-                    serverOutputWriter.println("[" + this.name + "]: " + gameClientResponse);
+                    sendToServer("[" + this.name + "]: " + gameClientResponse);
+
+                    leaderboard.recordGame(activePlayer, moveResult.contains("WIN"), activeGame.getPlayerGold(),
+                            activeGame.getTurn(), System.currentTimeMillis() - activeGameStart);
+
+                    // the game is over, so there is nothing to resume
+                    if (snapshotStore != null) {
+                        snapshotStore.delete(activePlayer);
+                    }
+
                     endActiveGame();
+                } else if (!moveResult.equals("Invalid")) {
+                    if (snapshotStore != null && activeGame.getTurn() % SNAPSHOT_INTERVAL == 0) {
+                        snapshotStore.save(activePlayer, activeGame.createSnapshot());
+                    }
+
+                    // if the player has subscribed, send them the changes to their view as a separate message
+                    String stateDelta = activeGame.getStateDelta();
+                    if (stateDelta != null) {
+                        sendToServer("[" + this.name + "]: " + stateDelta);
+                    }
+
+                    // the frame is sent once and the server passes it on to every spectator
+                    sendToServer("[" + this.name + "]: " + activeGame.getSpectatorFrame());
                 }
             }
 
@@ -263,19 +381,193 @@ public class GameClient extends ChatClient {
     public void startActiveGame(GameLogic activeGame, String activePlayer) {
         this.activeGame = activeGame;
         this.activePlayer = activePlayer;
+        this.activeGameStart = System.currentTimeMillis();
+
+        // a resumed game cannot be replayed from its seed, so only new games are recorded
+        if (actionLogDirectory != null && activeGame.getTurn() == 0) {
+            Path logPath = actionLogDirectory.resolve(activePlayer + "-" + activeGame.getSeed() + ".log");
+            try {
+                activeLog = new ActionLog(logPath, activeGame);
+                activeGame.setActionLog(activeLog);
+            } catch (IOException e) {
+                System.out.println("The game could not be recorded: " + e.getMessage());
+            }
+        }
+
         this.activeGame.runGame();
     }
 
+    /**
+     * Sends the players with the best scores to every user, one player per message.
+     */
+    private void sendLeaderboard() {
+        List<PlayerScore> top = leaderboard.getTop(LEADERBOARD_SIZE);
+
+        if (top.isEmpty()) {
+            sendToServer("[" + this.name + "]: Leaderboard: no games have been finished yet.");
+        }
+
+        for (int i = 0; i < top.size(); i++) {
+            sendToServer("[" + this.name + "]: Leaderboard: " + (i + 1) + ". " + top.get(i));
+        }
+    }
+
+    /**
+     * Sends the position of a player on the leaderboard to every user.
+     * @param playerName The name of the player who asked for their rank.
+     */
+    private void sendRank(String playerName) {
+        PlayerScore score = leaderboard.getScore(playerName);
+
+        if (score == null) {
+            sendToServer("[" + this.name + "]: Leaderboard: " + playerName + " has not finished a game yet.");
+        } else {
+            String rank = leaderboard.getRank(playerName) + " of " + leaderboard.size();
+            sendToServer("[" + this.name + "]: Leaderboard: " + rank + ". " + score);
+        }
+    }
+
+    /**
+     * Restores the saved game of a player, if they have one. A game whose snapshot is invalid is discarded, as part
+     * of it may already have been restored.
+     * @param playerName The name of the player.
+     * @return The player's saved game, or null if they have none or it could not be restored.
+     */
+    private GameLogic resumeSavedGame(String playerName) {
+        if (snapshotStore == null) {
+            return null;
+        }
+
+        try {
+            byte[] snapshot = snapshotStore.load(playerName);
+            if (snapshot == null) {
+                return null;
+            }
+
+            GameLogic game = new GameLogic(terrain);
+            game.restoreSnapshot(snapshot);
+            return game;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("The saved game of " + playerName + " could not be resumed: " + e.getMessage());
+            return null;
+        }
+    }
+
     /**
      * Resets the game being played so that a new user can play the game.
      */
     public void endActiveGame() {
+        if (activeLog != null) {
+            try {
+                activeLog.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            activeLog = null;
+        }
+
         this.activeGame = null;
         this.activePlayer = null;
     }
 
+    /**
+     * Used only on the instantiation of the client. Loads the map file given by the optional map argument.
+     * If the file cannot be loaded, the user is told the problem and the default map is used.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The terrain stored in the map file supplied as a command line argument, otherwise, if none is given,
+     * the default terrain is used.
+     */
+    private static Terrain getMapArg(String[] args) {
+        Terrain terrain = Terrain.DEFAULT;
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-gcm")) {
+                try {
+                    terrain = MapFile.load(Paths.get(args[i + 1]));
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Map parameter given with no value, default map used.");
+                } catch (IOException e) {
+                    System.out.println("The map file could not be loaded, default map used: " + e.getMessage());
+                }
+            }
+        }
+
+        return terrain;
+    }
+
+    /**
+     * Used only on the instantiation of the client. Gets the directory given by the optional action log argument.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The directory games are recorded to, or null if no directory is given.
+     */
+    private static Path getActionLogArg(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-gcl")) {
+                try {
+                    return Paths.get(args[i + 1]);
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Action log parameter given with no value, games will not be recorded.");
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Used only on the instantiation of the client. Opens the snapshot store in the directory given by the optional
+     * snapshot argument.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The store games are saved to, or null if no directory is given or it cannot be used.
+     */
+    private static SnapshotStore getSnapshotArg(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-gcs")) {
+                try {
+                    return new SnapshotStore(Paths.get(args[i + 1]));
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Snapshot parameter given with no value, games will not be saved.");
+                } catch (IOException e) {
+                    System.out.println("The snapshot directory could not be used, games will not be saved: " + e.getMessage());
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Used only on the instantiation of the client. Loads the leaderboard from the file given by the optional
+     * leaderboard argument.
+     * @param args The array of strings that were provided as command line arguments.
+     * @return The leaderboard saved in the file, or a leaderboard that is not saved if no file is given or it cannot
+     * be used.
+     */
+    private static Leaderboard getLeaderboardArg(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-gcb")) {
+                try {
+                    return new Leaderboard(Paths.get(args[i + 1]));
+                } catch (IndexOutOfBoundsException e) {
+                    System.out.println("Leaderboard parameter given with no value, the leaderboard will not be saved.");
+                } catch (IOException e) {
+                    System.out.println("The leaderboard file could not be used, it will not be saved: " + e.getMessage());
+                }
+            }
+        }
+
+        return new Leaderboard();
+    }
+
     public static void main(String[] args) {
         GameClient gameClient = new GameClient(getAddressArg(args), getPortArg(args));
+        gameClient.setTerrain(getMapArg(args));
+        gameClient.setActionLogDirectory(getActionLogArg(args));
+        gameClient.setSnapshotStore(getSnapshotArg(args));
+        gameClient.setLeaderboard(getLeaderboardArg(args));
+        gameClient.setTransport(getTransportArg(args));
+        gameClient.setAutoReconnect(getReconnectArg(args));
         gameClient.start();
     }
 
@@ -0,0 +1,15 @@
+package chat.system.client;
+
+/**
+ * Works out what a message sent to the bot is about, e.g. "greeting" for "hello". Implementations are used by
+ * several threads at once, so classifying a message must not change the classifier.
+ */
+public interface IntentClassifier {
+
+    /**
+     * @param message the message.
+     * @return The intent of the message, or an empty string if the message is not understood.
+     */
+    String classify(CharSequence message);
+
+}
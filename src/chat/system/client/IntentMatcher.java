@@ -0,0 +1,302 @@
+package chat.system.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Works out the intent of a message from the phrases it contains, e.g. "greeting" if it contains "hello".
+ * <br></br>
+ * The phrases are given one per line as "intent: phrase", and intents given first take priority over later ones.
+ * A phrase can be followed by " !exception", in which case it only counts if the message does not also contain the
+ * exception, e.g. "user-negative-feeling: bad !not bad". Blank lines and lines starting with # are ignored.
+ * <br></br>
+ * Every phrase is compiled into a single Aho-Corasick automaton, so a message is matched against all of them in one
+ * pass over its characters, however many phrases there are. Matching ignores case.
+ */
+public class IntentMatcher implements IntentClassifier {
+
+    private static final int NO_INTENT = Integer.MAX_VALUE;
+
+    private String[] intents; // the intents, in order of priority
+
+    private int[] symbols; // the column of each character in the transition table, 0 for characters in no phrase
+    private int width; // the number of columns in the transition table
+
+    private int[] transitions; // the next state for each state and symbol, in rows of width columns
+    private int[] priorities; // the best intent of a phrase ending in each state, or NO_INTENT
+    private int[][] marks; // the phrases with exceptions, and the exceptions, ending in each state, or null
+
+    // each phrase with an exception: its mark, the mark of its exception and its intent
+    private int[] conditionalPhrases;
+    private int[] conditionalExceptions;
+    private int[] conditionalIntents;
+
+    private int markCount;
+
+    /**
+     * Constructor for an IntentMatcher, compiles the given phrases.
+     * @param lines the phrases, in the format described above.
+     * @throws IllegalArgumentException If a line is not in the format described above.
+     */
+    public IntentMatcher(List<String> lines) {
+        ArrayList<String> intentList = new ArrayList<String>();
+        ArrayList<String> phrases = new ArrayList<String>();
+        ArrayList<Integer> phraseIntents = new ArrayList<Integer>();
+        HashMap<String, Integer> markIds = new HashMap<String, Integer>();
+        ArrayList<int[]> conditionals = new ArrayList<int[]>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not in the format \"intent: phrase\".");
+            }
+
+            String intent = line.substring(0, colon).trim();
+            String phrase = line.substring(colon + 1).trim().toLowerCase(Locale.ROOT);
+            String exception = null;
+
+            int exclamation = phrase.indexOf(" !");
+            if (exclamation >= 0) {
+                exception = phrase.substring(exclamation + 2).trim();
+                phrase = phrase.substring(0, exclamation).trim();
+            }
+
+            if (phrase.isEmpty() || (exception != null && exception.isEmpty())) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " has an empty phrase.");
+            }
+
+            int intentIndex = intentList.indexOf(intent);
+            if (intentIndex < 0) {
+                intentIndex = intentList.size();
+                intentList.add(intent);
+            }
+
+            if (exception == null) {
+                phrases.add(phrase);
+                phraseIntents.add(intentIndex);
+            } else {
+                // a phrase with an exception is only noted while matching, and checked once the message has been read
+                conditionals.add(new int[] {getMark(markIds, phrase), getMark(markIds, exception), intentIndex});
+            }
+        }
+
+        intents = intentList.toArray(new String[intentList.size()]);
+        markCount = markIds.size();
+
+        conditionalPhrases = new int[conditionals.size()];
+        conditionalExceptions = new int[conditionals.size()];
+        conditionalIntents = new int[conditionals.size()];
+        for (int i = 0; i < conditionals.size(); i++) {
+            conditionalPhrases[i] = conditionals.get(i)[0];
+            conditionalExceptions[i] = conditionals.get(i)[1];
+            conditionalIntents[i] = conditionals.get(i)[2];
+        }
+
+        build(phrases, phraseIntents, markIds);
+    }
+
+    /**
+     * Loads phrases from a file.
+     * @param path the path of the file, in the format described above.
+     * @return The matcher for the phrases in the file.
+     * @throws IOException If the file cannot be read or is not in the format described above.
+     */
+    public static IntentMatcher load(Path path) throws IOException {
+        try {
+            return new IntentMatcher(Files.readAllLines(path, StandardCharsets.UTF_8));
+        } catch (IllegalArgumentException e) {
+            throw new IOException(path + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param markIds the marks given out so far, by phrase.
+     * @param phrase a phrase that must be noted when it is found.
+     * @return The mark of the phrase, a new one if it does not have one yet.
+     */
+    private static int getMark(HashMap<String, Integer> markIds, String phrase) {
+        Integer mark = markIds.get(phrase);
+        if (mark == null) {
+            mark = markIds.size();
+            markIds.put(phrase, mark);
+        }
+
+        return mark;
+    }
+
+    /**
+     * Builds the automaton. The phrases are first added to a trie, then the states are visited breadth first to fill
+     * in every missing transition from the state's failure link, so matching never has to follow failure links.
+     * @param phrases the phrases without exceptions.
+     * @param phraseIntents the intent of each of those phrases.
+     * @param markIds the phrases that are noted when found, by phrase.
+     */
+    private void build(List<String> phrases, List<Integer> phraseIntents, HashMap<String, Integer> markIds) {
+        ArrayList<String> allPhrases = new ArrayList<String>(phrases);
+        allPhrases.addAll(markIds.keySet());
+
+        // only characters that appear in a phrase get their own column
+        int maximum = 0;
+        for (String phrase : allPhrases) {
+            for (int i = 0; i < phrase.length(); i++) {
+                maximum = Math.max(maximum, phrase.charAt(i));
+            }
+        }
+
+        symbols = new int[maximum + 1];
+        width = 1;
+        for (String phrase : allPhrases) {
+            for (int i = 0; i < phrase.length(); i++) {
+                if (symbols[phrase.charAt(i)] == 0) {
+                    symbols[phrase.charAt(i)] = width++;
+                }
+            }
+        }
+
+        // the trie, with -1 for missing transitions
+        int stateCount = 1;
+        transitions = new int[width * 16];
+        Arrays.fill(transitions, -1);
+        priorities = new int[16];
+        priorities[0] = NO_INTENT;
+        ArrayList<ArrayList<Integer>> stateMarks = new ArrayList<ArrayList<Integer>>();
+        stateMarks.add(null);
+
+        for (int i = 0; i < allPhrases.size(); i++) {
+            String phrase = allPhrases.get(i);
+
+            int state = 0;
+            for (int j = 0; j < phrase.length(); j++) {
+                int index = state * width + symbols[phrase.charAt(j)];
+
+                if (transitions[index] < 0) {
+                    if (stateCount == priorities.length) {
+                        int length = transitions.length;
+                        transitions = Arrays.copyOf(transitions, length * 2);
+                        Arrays.fill(transitions, length, length * 2, -1);
+                        priorities = Arrays.copyOf(priorities, stateCount * 2);
+                    }
+
+                    priorities[stateCount] = NO_INTENT;
+                    stateMarks.add(null);
+                    transitions[index] = stateCount++;
+                }
+
+                state = transitions[index];
+            }
+
+            if (i < phrases.size()) {
+                priorities[state] = Math.min(priorities[state], phraseIntents.get(i));
+            } else {
+                if (stateMarks.get(state) == null) {
+                    stateMarks.set(state, new ArrayList<Integer>());
+                }
+                stateMarks.get(state).add(markIds.get(phrase));
+            }
+        }
+
+        transitions = Arrays.copyOf(transitions, stateCount * width);
+        priorities = Arrays.copyOf(priorities, stateCount);
+
+        // a state also matches every phrase its failure link matches, the longest suffix of it that is in the trie
+        int[] failures = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+
+        for (int symbol = 0; symbol < width; symbol++) {
+            int child = transitions[symbol];
+            if (child < 0) {
+                transitions[symbol] = 0;
+            } else {
+                failures[child] = 0;
+                queue.add(child);
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failure = failures[state];
+
+            priorities[state] = Math.min(priorities[state], priorities[failure]);
+            if (stateMarks.get(failure) != null) {
+                if (stateMarks.get(state) == null) {
+                    stateMarks.set(state, new ArrayList<Integer>());
+                }
+                stateMarks.get(state).addAll(stateMarks.get(failure));
+            }
+
+            for (int symbol = 0; symbol < width; symbol++) {
+                int index = state * width + symbol;
+                int child = transitions[index];
+
+                if (child < 0) {
+                    transitions[index] = transitions[failure * width + symbol];
+                } else {
+                    failures[child] = transitions[failure * width + symbol];
+                    queue.add(child);
+                }
+            }
+        }
+
+        marks = new int[stateCount][];
+        for (int state = 0; state < stateCount; state++) {
+            ArrayList<Integer> stateMark = stateMarks.get(state);
+            if (stateMark != null) {
+                marks[state] = new int[stateMark.size()];
+                for (int i = 0; i < stateMark.size(); i++) {
+                    marks[state][i] = stateMark.get(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the intent of a message.
+     * @param message the message.
+     * @return The highest priority intent with a phrase in the message, or an empty string if there is none.
+     */
+    @Override
+    public String classify(CharSequence message) {
+        int best = NO_INTENT;
+        boolean[] found = markCount > 0 ? new boolean[markCount] : null;
+
+        int state = 0;
+        for (int i = 0; i < message.length() && best > 0; i++) {
+            char character = Character.toLowerCase(message.charAt(i));
+            int symbol = character < symbols.length ? symbols[character] : 0;
+
+            state = transitions[state * width + symbol];
+
+            if (priorities[state] < best) {
+                best = priorities[state];
+            }
+
+            if (marks[state] != null) {
+                for (int mark : marks[state]) {
+                    found[mark] = true;
+                }
+            }
+        }
+
+        for (int i = 0; i < conditionalIntents.length; i++) {
+            if (conditionalIntents[i] < best && found[conditionalPhrases[i]] && !found[conditionalExceptions[i]]) {
+                best = conditionalIntents[i];
+            }
+        }
+
+        return best == NO_INTENT ? "" : intents[best];
+    }
+
+}
@@ -0,0 +1,250 @@
+package chat.system.client;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trains the model used by {@link NaiveBayesClassifier} from a file of example messages, and writes it to a model
+ * file.
+ * <br></br>
+ * The examples are given one per line as "intent: message", in the same format as a phrase file, so a phrase file
+ * can be used as a small training set. Blank lines and lines starting with # are ignored.
+ */
+public class IntentTrainer {
+
+    private static final int DEFAULT_BUCKET_BITS = 16;
+
+    private int bucketBits;
+
+    private ArrayList<String> intents;
+    private int[] exampleCounts; // the number of examples of each intent
+    private long[] featureCounts; // the number of features in the examples of each intent
+    private int[] bucketCounts; // the number of times each bucket appeared in the examples of each intent
+
+    /**
+     * Constructor for a trainer with no examples.
+     * @param bucketBits the number of bits in a bucket number, the model has 2 to the power of this many buckets.
+     */
+    public IntentTrainer(int bucketBits) {
+        if (bucketBits <= 0 || bucketBits > 24) {
+            throw new IllegalArgumentException("The number of bucket bits must be between 1 and 24.");
+        }
+
+        this.bucketBits = bucketBits;
+
+        intents = new ArrayList<String>();
+        exampleCounts = new int[0];
+        featureCounts = new long[0];
+        bucketCounts = new int[0];
+    }
+
+    /**
+     * Adds the examples in the given lines.
+     * @param lines the examples, in the format described above.
+     * @return The number of examples added.
+     * @throws IllegalArgumentException If a line is not in the format described above.
+     */
+    public int addExamples(List<String> lines) {
+        int added = 0;
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + " is not in the format \"intent: message\".");
+            }
+
+            addExample(line.substring(0, colon).trim(), line.substring(colon + 1));
+            added++;
+        }
+
+        return added;
+    }
+
+    /**
+     * Adds an example message.
+     * @param intent the intent of the message.
+     * @param message the message.
+     */
+    public void addExample(String intent, String message) {
+        int index = intents.indexOf(intent);
+        if (index < 0) {
+            index = addIntent(intent);
+        }
+
+        final int intentIndex = index;
+        final int intentCount = intents.size();
+
+        exampleCounts[intentIndex]++;
+        NaiveBayesClassifier.hashFeatures(message, (1 << bucketBits) - 1, new NaiveBayesClassifier.FeatureVisitor() {
+            @Override
+            public void visit(int bucket) {
+                bucketCounts[bucket * intentCount + intentIndex]++;
+                featureCounts[intentIndex]++;
+            }
+        });
+    }
+
+    /**
+     * Adds a new intent, widening the table of bucket counts by one column.
+     * @param intent the name of the intent.
+     * @return The index of the intent.
+     */
+    private int addIntent(String intent) {
+        int oldCount = intents.size();
+        intents.add(intent);
+
+        int buckets = 1 << bucketBits;
+        int[] widened = new int[buckets * (oldCount + 1)];
+        for (int bucket = 0; bucket < buckets && oldCount > 0; bucket++) {
+            System.arraycopy(bucketCounts, bucket * oldCount, widened, bucket * (oldCount + 1), oldCount);
+        }
+        bucketCounts = widened;
+
+        exampleCounts = Arrays.copyOf(exampleCounts, oldCount + 1);
+        featureCounts = Arrays.copyOf(featureCounts, oldCount + 1);
+
+        return oldCount;
+    }
+
+    /**
+     * Writes the model to a model file, replacing the file if it already exists. The probabilities are smoothed by
+     * adding one to the count of every bucket that appeared in any example.
+     * @param path the path of the model file.
+     * @throws IOException If the file cannot be written, or there are no examples.
+     */
+    public void save(Path path) throws IOException {
+        int intentCount = intents.size();
+        if (intentCount == 0) {
+            throw new IOException("There are no examples to train on.");
+        }
+
+        int buckets = 1 << bucketBits;
+
+        int totalExamples = 0;
+        for (int count : exampleCounts) {
+            totalExamples += count;
+        }
+
+        int usedBuckets = 0;
+        boolean[] used = new boolean[buckets];
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            for (int i = 0; i < intentCount && !used[bucket]; i++) {
+                used[bucket] = bucketCounts[bucket * intentCount + i] > 0;
+            }
+            if (used[bucket]) {
+                usedBuckets++;
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(NaiveBayesClassifier.MAGIC);
+            out.writeInt(NaiveBayesClassifier.VERSION);
+            out.writeInt(intentCount);
+            out.writeInt(bucketBits);
+
+            for (String intent : intents) {
+                byte[] name = intent.getBytes(StandardCharsets.UTF_8);
+                out.writeShort(name.length);
+                out.write(name);
+            }
+
+            for (int i = 0; i < intentCount; i++) {
+                out.writeFloat((float) Math.log((double) exampleCounts[i] / totalExamples));
+            }
+
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                for (int i = 0; i < intentCount; i++) {
+                    float weight = 0;
+
+                    if (used[bucket]) {
+                        double probability = (bucketCounts[bucket * intentCount + i] + 1.0)
+                                / (featureCounts[i] + usedBuckets);
+                        weight = (float) Math.log(probability);
+
+                        // 0 marks a bucket that was never seen, so a seen bucket never has a weight of exactly 0
+                        if (weight == 0) {
+                            weight = -Float.MIN_VALUE;
+                        }
+                    }
+
+                    out.writeFloat(weight);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The intents seen so far, in the order they were first seen.
+     */
+    public List<String> getIntents() {
+        return intents;
+    }
+
+    /**
+     * Trains a model from a file of examples, e.g.
+     * java chat.system.client.IntentTrainer examples.txt intents.model -bits 16
+     * and then checks how many of the examples the model classifies correctly.
+     * @param args the examples file, the model file, and optionally -bits and the number of bits in a bucket number.
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: IntentTrainer <ExamplesFile> <ModelFile> [-bits <BucketBits>]");
+            System.exit(1);
+        }
+
+        try {
+            int bucketBits = DEFAULT_BUCKET_BITS;
+            for (int i = 2; i < args.length - 1; i++) {
+                if (args[i].equals("-bits")) {
+                    bucketBits = Integer.parseInt(args[i + 1]);
+                }
+            }
+
+            Path examplesPath = Paths.get(args[0]);
+            Path modelPath = Paths.get(args[1]);
+
+            long start = System.nanoTime();
+            List<String> lines = Files.readAllLines(examplesPath, StandardCharsets.UTF_8);
+
+            IntentTrainer trainer = new IntentTrainer(bucketBits);
+            int examples = trainer.addExamples(lines);
+            trainer.save(modelPath);
+
+            System.out.printf("Trained on %d examples of %d intents in %.1f ms, model written to %s (%d bytes).%n",
+                    examples, trainer.getIntents().size(), (System.nanoTime() - start) / 1e6, modelPath,
+                    Files.size(modelPath));
+
+            // check the model against the examples it was trained on
+            NaiveBayesClassifier classifier = NaiveBayesClassifier.load(modelPath);
+            int correct = 0;
+            for (String line : lines) {
+                line = line.trim();
+                int colon = line.indexOf(':');
+                if (!line.isEmpty() && !line.startsWith("#")
+                        && classifier.classify(line.substring(colon + 1)).equals(line.substring(0, colon).trim())) {
+                    correct++;
+                }
+            }
+
+            System.out.printf("%d of %d examples (%.1f%%) are classified correctly.%n", correct, examples,
+                    100.0 * correct / examples);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("The model could not be trained: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
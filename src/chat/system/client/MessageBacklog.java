@@ -0,0 +1,159 @@
+package chat.system.client;
+
+import java.util.HashSet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The messages waiting to be answered by the bot, held in a fixed size ring buffer so the backlog never grows
+ * however long the bot runs.
+ * <br></br>
+ * Adding a message never blocks. A message that is identical to one already waiting is merged with it, and is
+ * answered once. If the backlog is full, the oldest waiting message is dropped to make room. Both are counted.
+ */
+public class MessageBacklog {
+
+    private final String[] messages;
+    private int head; // the index of the oldest waiting message
+    private int count; // the number of waiting messages
+
+    private final HashSet<String> waiting; // the waiting messages, to find duplicates
+
+    private long merged; // messages merged with an identical waiting message
+    private long dropped; // messages dropped because the backlog was full
+
+    private final ReentrantLock lock;
+    private final Condition notEmpty;
+
+    /**
+     * Constructor for an empty backlog.
+     * @param capacity The number of messages that can be waiting at once.
+     */
+    public MessageBacklog(int capacity) {
+        messages = new String[capacity];
+        waiting = new HashSet<String>();
+
+        lock = new ReentrantLock();
+        notEmpty = lock.newCondition();
+    }
+
+    /**
+     * Adds a message to the backlog, waking a thread waiting in take().
+     * @param message The message to add.
+     * @return True if the message was added, false if it was merged with an identical waiting message.
+     */
+    public boolean add(String message) {
+        lock.lock();
+        try {
+            if (!waiting.add(message)) {
+                merged++;
+                return false;
+            }
+
+            if (count == messages.length) {
+                waiting.remove(removeOldest());
+                dropped++;
+            }
+
+            messages[(head + count) % messages.length] = message;
+            count++;
+
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest waiting message, waiting for one to be added if the backlog is empty.
+     * @return The oldest waiting message.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public String take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0) {
+                notEmpty.await();
+            }
+
+            String message = removeOldest();
+            waiting.remove(message);
+
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest waiting message without waiting.
+     * @return The oldest waiting message, or null if the backlog is empty.
+     */
+    public String poll() {
+        lock.lock();
+        try {
+            if (count == 0) {
+                return null;
+            }
+
+            String message = removeOldest();
+            waiting.remove(message);
+
+            return message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the oldest message from the ring buffer, the lock must be held and the backlog must not be empty.
+     * @return The oldest message.
+     */
+    private String removeOldest() {
+        String message = messages[head];
+        messages[head] = null;
+
+        head = (head + 1) % messages.length;
+        count--;
+
+        return message;
+    }
+
+    /**
+     * @return The number of messages waiting to be answered.
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of messages merged with an identical waiting message.
+     */
+    public long getMerged() {
+        lock.lock();
+        try {
+            return merged;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of messages dropped because the backlog was full.
+     */
+    public long getDropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+}
@@ -0,0 +1,288 @@
+package chat.system.client;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Keeps every message a client receives in an append-only file, and an index of the words in them so they can be
+ * searched without reading the file again.
+ * <br></br>
+ * Each line of the file is the time a message was received, in milliseconds, a tab and the message. The index maps
+ * each word, in lower case, to the numbers of the messages containing it in the order they were received, kept in
+ * int arrays. It is built from the file when the history is opened and added to as messages arrive, and the file
+ * is only read to fetch the messages a search finds. A history is used by the client's read and write threads at
+ * once, so its methods are synchronized.
+ */
+public class MessageHistory implements Closeable {
+
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private OutputStream output;
+    private FileChannel input; // reads the messages a search finds
+
+    private long[] offsets; // the position of each message in the file, and the end of the file after the last
+    private int messageCount;
+
+    private HashMap<String, Postings> index;
+
+    private SimpleDateFormat timeFormat;
+
+    /**
+     * The numbers of the messages containing a word, in increasing order.
+     */
+    private static final class Postings {
+
+        private int[] messages = new int[2];
+        private int size;
+
+        private void add(int message) {
+            // a word used twice in a message is only indexed once
+            if (size > 0 && messages[size - 1] == message) {
+                return;
+            }
+
+            if (size == messages.length) {
+                messages = Arrays.copyOf(messages, size * 2);
+            }
+            messages[size++] = message;
+        }
+
+    }
+
+    /**
+     * Opens a history file, creating it if it does not exist, and indexes the messages already in it. A message
+     * left half written when the client last stopped is removed.
+     * @param path the path of the history file.
+     * @throws IOException If the file cannot be read or written.
+     */
+    public MessageHistory(Path path) throws IOException {
+        offsets = new long[1024];
+        index = new HashMap<String, Postings>();
+        timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+
+        if (!Files.exists(path)) {
+            Files.createFile(path);
+        }
+
+        long end = load(path);
+        if (end < Files.size(path)) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(end);
+            }
+        }
+
+        output = new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND));
+        input = FileChannel.open(path, StandardOpenOption.READ);
+    }
+
+    /**
+     * Reads the file and indexes each whole message in it.
+     * @param path the path of the history file.
+     * @return The position of the end of the last whole message.
+     * @throws IOException If the file cannot be read.
+     */
+    private long load(Path path) throws IOException {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long position = 0;
+
+        try (InputStream stream = Files.newInputStream(path)) {
+            int read;
+            while ((read = stream.read(buffer)) > 0) {
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        position += lineLength + 1;
+                        indexMessage(new String(line, 0, lineLength, StandardCharsets.UTF_8), position);
+                        lineLength = 0;
+                    } else {
+                        if (lineLength == line.length) {
+                            line = Arrays.copyOf(line, lineLength * 2);
+                        }
+                        line[lineLength++] = buffer[i];
+                    }
+                }
+            }
+        }
+
+        return position;
+    }
+
+    /**
+     * @return The number of messages in the history.
+     */
+    public synchronized int getMessageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Appends a message to the file and adds it to the index.
+     * @param message the message received.
+     * @throws IOException If the message cannot be written.
+     */
+    public synchronized void add(String message) throws IOException {
+        byte[] line = (System.currentTimeMillis() + "\t" + message + "\n").getBytes(StandardCharsets.UTF_8);
+        output.write(line);
+
+        indexMessage(new String(line, 0, line.length - 1, StandardCharsets.UTF_8), offsets[messageCount] + line.length);
+    }
+
+    /**
+     * Adds a line of the file to the index.
+     * @param line the line, without its line separator.
+     * @param end the position of the end of the line in the file, including its line separator.
+     */
+    private void indexMessage(String line, long end) {
+        int message = messageCount++;
+        if (messageCount == offsets.length) {
+            offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[messageCount] = end;
+
+        for (String word : getWords(line.substring(line.indexOf('\t') + 1))) {
+            Postings postings = index.get(word);
+            if (postings == null) {
+                postings = new Postings();
+                index.put(word, postings);
+            }
+            postings.add(message);
+        }
+    }
+
+    /**
+     * Finds the messages containing every word of a query, ignoring case.
+     * @param query the words to search for.
+     * @return The numbers of the messages found, in the order they were received.
+     */
+    public synchronized int[] search(String query) {
+        List<String> words = getWords(query);
+        if (words.isEmpty()) {
+            return new int[0];
+        }
+
+        ArrayList<Postings> lists = new ArrayList<Postings>();
+        for (String word : words) {
+            Postings postings = index.get(word);
+            if (postings == null) {
+                return new int[0];
+            }
+            lists.add(postings);
+        }
+
+        // start from the rarest word, so each message checked against the other words is already a likely match
+        lists.sort(new Comparator<Postings>() {
+            @Override
+            public int compare(Postings first, Postings second) {
+                return Integer.compare(first.size, second.size);
+            }
+        });
+
+        Postings rarest = lists.get(0);
+        int[] found = new int[rarest.size];
+        int foundCount = 0;
+
+        int[] starts = new int[lists.size()]; // where each list is searched from, as the messages only increase
+        for (int i = 0; i < rarest.size; i++) {
+            int message = rarest.messages[i];
+
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                Postings other = lists.get(j);
+                int position = Arrays.binarySearch(other.messages, starts[j], other.size, message);
+
+                inAll = position >= 0;
+                starts[j] = inAll ? position + 1 : -position - 1;
+            }
+
+            if (inAll) {
+                found[foundCount++] = message;
+            }
+        }
+
+        return Arrays.copyOf(found, foundCount);
+    }
+
+    /**
+     * @param message the number of a message.
+     * @return The message, preceded by the time it was received.
+     * @throws IOException If the file cannot be read.
+     */
+    public synchronized String getMessage(int message) throws IOException {
+        if (message < 0 || message >= messageCount) {
+            throw new IndexOutOfBoundsException("There is no message " + message + ".");
+        }
+
+        // the message may still be waiting to be written
+        output.flush();
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) (offsets[message + 1] - offsets[message] - 1));
+        while (buffer.hasRemaining()) {
+            if (input.read(buffer, offsets[message] + buffer.position()) < 0) {
+                throw new IOException("The history file is shorter than expected.");
+            }
+        }
+
+        String line = new String(buffer.array(), StandardCharsets.UTF_8);
+        int tab = line.indexOf('\t');
+
+        try {
+            return "[" + timeFormat.format(new Date(Long.parseLong(line.substring(0, tab)))) + "] "
+                    + line.substring(tab + 1);
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return line;
+        }
+    }
+
+    /**
+     * Splits text into the words that are indexed: runs of letters and digits, in lower case.
+     * @param text the text.
+     * @return The words, in the order they appear.
+     */
+    static List<String> getWords(String text) {
+        ArrayList<String> words = new ArrayList<String>();
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+    /**
+     * Writes any messages waiting to be written and closes the file.
+     * @throws IOException If the file cannot be written or closed.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            output.close();
+        } finally {
+            input.close();
+        }
+    }
+
+}
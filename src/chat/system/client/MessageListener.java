@@ -0,0 +1,22 @@
+package chat.system.client;
+
+/**
+ * Receives the messages that arrive on a {@link ChatConnection}. Both methods are called on the thread of the
+ * connection's {@link ChatTransport}, so they must return quickly and must never block.
+ */
+public interface MessageListener {
+
+    /**
+     * Called for each line received from the server, in the order they arrive.
+     * @param connection the connection the line arrived on.
+     * @param message the line, without its line separator.
+     */
+    void messageReceived(ChatConnection connection, String message);
+
+    /**
+     * Called once when the connection closes, whether it was closed by the server or by the client.
+     * @param connection the connection that has closed.
+     */
+    void connectionClosed(ChatConnection connection);
+
+}
@@ -0,0 +1,221 @@
+package chat.system.client;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Classifies messages with a naive Bayes model of the words in them, trained by {@link IntentTrainer}.
+ * <br></br>
+ * The features of a message are its words and its pairs of adjacent words, each hashed into one of a fixed number
+ * of buckets, so the model has the same size however many different words it was trained on. A message is given
+ * the intent with the highest log probability given its features. Features that never appeared in training are
+ * ignored, and a message with no known features is not understood.
+ * <br></br>
+ * A model file contains, in order: the magic number "CSNB", the format version, the number of intents, the number
+ * of bits in a bucket number, the name of each intent as a length and UTF-8 bytes, the log prior probability of each
+ * intent, and finally the log probability of each bucket for each intent, in bucket order. All numbers are
+ * big-endian. The file is memory mapped and read in place, so loading takes no time and classifying a message
+ * allocates nothing.
+ */
+public class NaiveBayesClassifier implements IntentClassifier {
+
+    static final int MAGIC = 0x43534E42; // "CSNB"
+    static final int VERSION = 1;
+
+    private static final int FNV_OFFSET = 0x811C9DC5;
+    private static final int FNV_PRIME = 0x01000193;
+
+    private String[] intents;
+
+    private int mask; // the bucket number of a feature is its hash masked with this
+    private FloatBuffer priors; // the log prior probability of each intent
+    private FloatBuffer weights; // the log probability of each bucket for each intent, 0 for unseen buckets
+
+    private ThreadLocal<Scorer> scorers; // each thread scores messages in its own array
+
+    /**
+     * Constructor for a classifier using the given model.
+     * @param intents the intents of the model.
+     * @param bucketBits the number of bits in a bucket number.
+     * @param priors the log prior probability of each intent.
+     * @param weights the log probability of each bucket for each intent.
+     */
+    private NaiveBayesClassifier(String[] intents, int bucketBits, FloatBuffer priors, FloatBuffer weights) {
+        this.intents = intents;
+        this.mask = (1 << bucketBits) - 1;
+        this.priors = priors;
+        this.weights = weights;
+
+        final int intentCount = intents.length;
+        scorers = new ThreadLocal<Scorer>() {
+            @Override
+            protected Scorer initialValue() {
+                return new Scorer(intentCount);
+            }
+        };
+    }
+
+    /**
+     * Memory maps a model file.
+     * @param path the path of the model file.
+     * @return The classifier using the model in the file.
+     * @throws IOException If the file cannot be read or is not a model file.
+     */
+    public static NaiveBayesClassifier load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+                throw new IOException(path + " is not a model file.");
+            }
+
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported model file version " + version + ".");
+            }
+
+            int intentCount = buffer.getInt();
+            int bucketBits = buffer.getInt();
+            if (intentCount <= 0 || bucketBits <= 0 || bucketBits > 24) {
+                throw new IOException(path + " has an invalid header.");
+            }
+
+            String[] intents = new String[intentCount];
+            for (int i = 0; i < intentCount; i++) {
+                byte[] name = new byte[buffer.getShort() & 0xFFFF];
+                buffer.get(name);
+                intents[i] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            if (buffer.remaining() < 4L * intentCount * ((1 << bucketBits) + 1)) {
+                throw new IOException(path + " is truncated.");
+            }
+
+            FloatBuffer priors = buffer.slice().asFloatBuffer();
+            buffer.position(buffer.position() + 4 * intentCount);
+            FloatBuffer weights = buffer.slice().asFloatBuffer();
+
+            return new NaiveBayesClassifier(intents, bucketBits, priors, weights);
+        } catch (BufferUnderflowException e) {
+            throw new IOException(path + " is truncated.");
+        }
+    }
+
+    @Override
+    public String classify(CharSequence message) {
+        Scorer scorer = scorers.get();
+        for (int i = 0; i < intents.length; i++) {
+            scorer.scores[i] = priors.get(i);
+        }
+        scorer.known = 0;
+
+        hashFeatures(message, mask, scorer);
+
+        if (scorer.known == 0) {
+            return "";
+        }
+
+        int best = 0;
+        for (int i = 1; i < intents.length; i++) {
+            if (scorer.scores[i] > scorer.scores[best]) {
+                best = i;
+            }
+        }
+
+        return intents[best];
+    }
+
+    /**
+     * Finds the features of a message: each word, made of letters and digits and ignoring case, and each pair of
+     * adjacent words. Nothing is allocated.
+     * @param message the message.
+     * @param mask the mask that turns the hash of a feature into its bucket number.
+     * @param visitor called with the bucket of each feature, in order.
+     */
+    static void hashFeatures(CharSequence message, int mask, FeatureVisitor visitor) {
+        int hash = FNV_OFFSET;
+        int previous = 0; // the hash of the previous word
+        boolean inWord = false;
+        boolean hasPrevious = false;
+
+        for (int i = 0; i <= message.length(); i++) {
+            char character = i < message.length() ? Character.toLowerCase(message.charAt(i)) : ' ';
+
+            if (Character.isLetterOrDigit(character)) {
+                hash = (hash ^ character) * FNV_PRIME;
+                inWord = true;
+            } else if (inWord) {
+                visitor.visit(bucket(hash, mask));
+                if (hasPrevious) {
+                    visitor.visit(bucket(previous * FNV_PRIME ^ Integer.rotateLeft(hash, 16), mask));
+                }
+
+                previous = hash;
+                hasPrevious = true;
+                hash = FNV_OFFSET;
+                inWord = false;
+            }
+        }
+    }
+
+    /**
+     * @param hash the hash of a feature.
+     * @param mask the mask for the number of buckets.
+     * @return The bucket of the feature, the hash is mixed first so every bit of it affects the bucket.
+     */
+    private static int bucket(int hash, int mask) {
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        hash ^= hash >>> 13;
+
+        return hash & mask;
+    }
+
+    /**
+     * Receives the features of a message from hashFeatures().
+     */
+    interface FeatureVisitor {
+
+        /**
+         * @param bucket the bucket of a feature of the message.
+         */
+        void visit(int bucket);
+
+    }
+
+    /**
+     * Adds the weights of each feature of a message to the score of each intent.
+     */
+    private final class Scorer implements FeatureVisitor {
+
+        private final float[] scores;
+        private int known; // the number of features seen in training
+
+        private Scorer(int intentCount) {
+            scores = new float[intentCount];
+        }
+
+        @Override
+        public void visit(int bucket) {
+            int offset = bucket * scores.length;
+
+            // a bucket no feature was trained on has every weight 0
+            if (weights.get(offset) == 0) {
+                return;
+            }
+
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] += weights.get(offset + i);
+            }
+            known++;
+        }
+
+    }
+
+}
@@ -0,0 +1,111 @@
+package chat.system.client;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The responses a bot can give for each intent, and how it picks one.
+ * <br></br>
+ * After a greeting or a question about how the bot feels, the bot may also ask the user how they are, using one of
+ * the questions of the table. Messages with an intent the table has no responses for get one of its unknown
+ * responses. ResponseTable objects never change, so a table can be shared by any number of bots and threads.
+ */
+public class ResponseTable {
+
+    public static final String QUESTION = "question"; // the key of the questions the bot asks
+    public static final String UNKNOWN = "unknown"; // the key of the responses to messages the bot does not understand
+
+    /**
+     * The responses of the original chat bot.
+     */
+    public static final ResponseTable DEFAULT;
+
+    static {
+        HashMap<String, String[]> responses = new HashMap<String, String[]>();
+        responses.put(QUESTION, new String[] {"How are you?", "Are you well?", "How do you feel?", "Are you ok?"});
+        responses.put("greeting", new String[] {"Hello.", "Hi.", "Greetings."});
+        responses.put("bot-feeling", new String[] {"I am well.", "I am good.", "I am fine."});
+        responses.put("user-positive-feeling", new String[] {"That is good to hear.", "I am glad to hear thet you feel well.", "I think it is great you feel this way."});
+        responses.put("user-negative-feeling", new String[] {"It is unfortunate that you feel like this.", "I am sorry to hear you feel this way.", "I hope you start to feel more positive soon."});
+        responses.put("thanks", new String[] {"You are welcome.", " No problem."});
+        responses.put("goodbye", new String[] {"Goodbye.", "Bye.", "Farewell.", "See you later."});
+        responses.put(UNKNOWN, new String[] {"I am sorry, but I do not understand.", "Apologies, I do not know how to respond to that."});
+
+        DEFAULT = new ResponseTable(responses);
+    }
+
+    private HashMap<String, String[]> responses; // the responses for each intent, and the questions and unknown responses
+
+    /**
+     * Constructor for a table with the given responses.
+     * @param responses the responses for each intent, which must include QUESTION and UNKNOWN.
+     */
+    private ResponseTable(HashMap<String, String[]> responses) {
+        this.responses = responses;
+    }
+
+    /**
+     * Creates a table that has the given responses, and the responses of the default table for any intent that is
+     * not given.
+     * @param overrides the responses for each intent, or for QUESTION or UNKNOWN.
+     * @return The new table.
+     * @throws IllegalArgumentException If an intent is given with no responses.
+     */
+    public static ResponseTable create(Map<String, List<String>> overrides) {
+        HashMap<String, String[]> responses = new HashMap<String, String[]>(DEFAULT.responses);
+
+        for (Map.Entry<String, List<String>> entry : overrides.entrySet()) {
+            if (entry.getValue().isEmpty()) {
+                throw new IllegalArgumentException("The intent " + entry.getKey() + " has no responses.");
+            }
+
+            responses.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+        }
+
+        return new ResponseTable(responses);
+    }
+
+    /**
+     * Takes the type of message generated from the analysis of the message and generates a response it deems
+     * appropriate, picking one of the responses for that type at random. After a greeting or a question about how
+     * the bot feels, a question is added to the end of the response if a random number is even, unless the bot has
+     * already asked the user how they are and is waiting for their answer.
+     * @param messageType The intent of the message.
+     * @param conversation The conversation with the user the response is for.
+     * @param random The random generator used to pick the response.
+     * @return The response.
+     */
+    public String generate(String messageType, Conversation conversation, Random random) {
+        String[] choices = messageType.equals(QUESTION) ? null : responses.get(messageType);
+
+        if (choices == null || messageType.equals(UNKNOWN)) {
+            String[] unknown = responses.get(UNKNOWN);
+            return unknown[random.nextInt(unknown.length)].trim();
+        }
+
+        String response = choices[random.nextInt(choices.length)] + " ";
+
+        switch (messageType) {
+            case "greeting":
+            case "bot-feeling":
+                if (random.nextInt() % 2 == 0 && conversation.askQuestion()) {
+                    String[] questions = responses.get(QUESTION);
+                    response += questions[random.nextInt(questions.length)];
+                }
+                break;
+
+            case "user-positive-feeling":
+            case "user-negative-feeling":
+                conversation.answerQuestion();
+                break;
+
+            default:
+                break;
+        }
+
+        return response.trim();
+    }
+
+}
@@ -0,0 +1,97 @@
+package chat.system.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Turns the lines received on a {@link ChatConnection} back into a stream, so code written to read the server with
+ * a BufferedReader works unchanged over a {@link ChatTransport}. Reading blocks until a line arrives, and the stream
+ * ends once the connection has closed.
+ */
+public class TransportReader extends Reader implements MessageListener {
+
+    private static final String END = new String(); // marks the end of the stream, compared by reference
+
+    private LinkedBlockingQueue<String> lines; // lines received but not yet read
+    private String line; // the line being read
+    private int position; // the position in the line being read
+    private boolean ended;
+    private volatile boolean closed;
+
+    /**
+     * Constructor for a reader, pass it to {@link ChatTransport#connect(String, int, MessageListener)}.
+     */
+    public TransportReader() {
+        lines = new LinkedBlockingQueue<String>();
+        line = "";
+    }
+
+    @Override
+    public void messageReceived(ChatConnection connection, String message) {
+        lines.add(message + "\n");
+    }
+
+    @Override
+    public void connectionClosed(ChatConnection connection) {
+        lines.add(END);
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            if (length == 0) {
+                return 0;
+            }
+
+            if (position == line.length()) {
+                if (ended) {
+                    return -1;
+                }
+
+                try {
+                    line = lines.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException();
+                }
+                position = 0;
+
+                if (line == END) {
+                    if (closed) {
+                        throw new IOException("Stream closed");
+                    }
+                    ended = true;
+                    return -1;
+                }
+            }
+
+            int count = Math.min(length, line.length() - position);
+            line.getChars(position, position + count, buffer, offset);
+            position += count;
+
+            return count;
+        }
+    }
+
+    @Override
+    public boolean ready() {
+        return position < line.length() || (!ended && !lines.isEmpty() && lines.peek() != END);
+    }
+
+    /**
+     * Closes the stream, so reading it, even a read already waiting for a line, fails as reading a closed socket
+     * does. Any lines not yet read are discarded and the connection is left open.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        lines.clear();
+        lines.add(END);
+    }
+
+}
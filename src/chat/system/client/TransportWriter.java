@@ -0,0 +1,66 @@
+package chat.system.client;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Turns a stream of characters into lines sent on a {@link ChatConnection}, so code written to send to the server
+ * with a PrintWriter works unchanged over a {@link ChatTransport}. Each line is sent as soon as it is complete,
+ * without waiting for it to be written. Writing to a closed connection throws an IOException, so a PrintWriter
+ * reports it through checkError() just as it does for a failed socket.
+ */
+public class TransportWriter extends Writer {
+
+    private ChatConnection connection;
+    private StringBuilder line; // the characters written since the last line separator
+
+    /**
+     * Constructor for a writer.
+     * @param connection the connection lines are sent on.
+     */
+    public TransportWriter(ChatConnection connection) {
+        this.connection = connection;
+        line = new StringBuilder();
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        synchronized (lock) {
+            for (int i = offset; i < offset + length; i++) {
+                char c = buffer[i];
+
+                if (c == '\n') {
+                    int end = line.length();
+                    if (end > 0 && line.charAt(end - 1) == '\r') {
+                        line.setLength(end - 1);
+                    }
+
+                    String complete = line.toString();
+                    line.setLength(0);
+
+                    if (!connection.send(complete)) {
+                        throw new IOException("The connection is closed.");
+                    }
+                } else {
+                    line.append(c);
+                }
+            }
+        }
+    }
+
+    /**
+     * Does nothing, complete lines have already been sent and an incomplete line cannot be.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Closes the connection once the lines already sent have been written.
+     */
+    @Override
+    public void close() {
+        connection.close();
+    }
+
+}
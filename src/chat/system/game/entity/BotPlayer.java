@@ -1,7 +1,8 @@
 package chat.system.game.entity;
 
-import java.util.Random;
+import java.nio.ByteBuffer;
 
+import chat.system.game.map.DistanceField;
 import chat.system.game.map.Map;
 
 /**
@@ -9,18 +10,26 @@ import chat.system.game.map.Map;
  */
 public class BotPlayer extends Player {
 
-    private final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+    private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
 
-    private String visibleMap; // string representation of the game map that the bot can use
+    private static final int DEFAULT_VIEW_RADIUS = 2; // the bot sees the same 5x5 area as the player
 
     private HumanPlayer player; // the human player object the bot will try to defeat
 
     private boolean mapRequired;
 
+    private int viewRadius; // the number of cells the bot can see in each direction
+    private boolean lineOfSightRequired; // if true, the bot cannot see the player through walls
+
+    // whether the bot saw the player the last time it looked, and where it saw them
+    private boolean playerVisible;
+    private int visiblePlayerRow;
+    private int visiblePlayerColumn;
+
     /**
      * Constructor for Bot object.
      * @param gameMap the map the player will play in.
-     * @param player the human player object opponent of the bot.
+     * @param player the human player object opponent of the bot, or null if the bot has no target yet.
      */
     public BotPlayer(Map gameMap, HumanPlayer player) {
         super(gameMap);
@@ -29,17 +38,29 @@ public class BotPlayer extends Player {
 
         mapRequired = true;
 
+        viewRadius = DEFAULT_VIEW_RADIUS;
+        lineOfSightRequired = false;
+        playerVisible = false;
+
         // prevent the player and bot spawning in the same position
-        if (row == player.getRow() && column == player.getColumn()) {
-            initialisePlayerPosition();
+        if (player != null && row == player.getRow() && column == player.getColumn()) {
+            initialisePlayerPosition(1, player);
         }
     }
 
     /**
-     * @return The map visible to the bot, i.e. the 5x5 section of the overall game map.
+     * @return The human player the bot is trying to catch, null if it has no target.
+     */
+    public HumanPlayer getTarget() {
+        return player;
+    }
+
+    /**
+     * Changes the human player the bot is trying to catch.
+     * @param player the new target of the bot, or null if the bot has no target.
      */
-    public String getVisibleMap() {
-        return visibleMap;
+    public void setTarget(HumanPlayer player) {
+        this.player = player;
     }
 
     /**
@@ -49,13 +70,158 @@ public class BotPlayer extends Player {
         return mapRequired;
     }
 
+    @Override
+    public int getStateSize() {
+        return super.getStateSize() + 1 + 8;
+    }
+
+    /**
+     * Writes the position of the bot, whether it is about to look for the player or move, and where it last saw
+     * the player to a buffer.
+     * @param buffer the buffer written to.
+     */
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        super.writeState(buffer);
+
+        buffer.put((byte) ((mapRequired ? 1 : 0) | (playerVisible ? 2 : 0)));
+        buffer.putInt(visiblePlayerRow);
+        buffer.putInt(visiblePlayerColumn);
+    }
+
+    @Override
+    public void readState(ByteBuffer buffer) {
+        super.readState(buffer);
+
+        byte flags = buffer.get();
+        boolean savedPlayerVisible = (flags & 2) != 0;
+        int savedRow = buffer.getInt();
+        int savedColumn = buffer.getInt();
+
+        // the bot chases the player to where it saw them, so that must be a cell the player could be on
+        if (savedPlayerVisible && gameMap.isWall(savedRow, savedColumn)) {
+            throw new IllegalArgumentException("The bot saw the player on " + savedRow + ", " + savedColumn
+                    + ", which is not a free cell of the map.");
+        }
+
+        mapRequired = (flags & 1) != 0;
+        playerVisible = savedPlayerVisible;
+        visiblePlayerRow = savedRow;
+        visiblePlayerColumn = savedColumn;
+    }
+
+    /**
+     * @return The number of cells the bot can see in each direction from its position.
+     */
+    public int getViewRadius() {
+        return viewRadius;
+    }
+
+    /**
+     * Sets the number of cells the bot can see in each direction from its position.
+     * @param viewRadius the new view radius.
+     */
+    public void setViewRadius(int viewRadius) {
+        this.viewRadius = viewRadius;
+    }
+
+    /**
+     * @return True if walls between the bot and the player block the view of the bot.
+     */
+    public boolean getLineOfSightRequired() {
+        return lineOfSightRequired;
+    }
+
+    /**
+     * Sets whether walls between the bot and the player block the view of the bot.
+     * @param lineOfSightRequired true if the bot should not see through walls.
+     */
+    public void setLineOfSightRequired(boolean lineOfSightRequired) {
+        this.lineOfSightRequired = lineOfSightRequired;
+    }
+
+    /**
+     * @return The row the player was seen on the last time the bot looked, only valid if the player was visible.
+     */
+    public int getVisiblePlayerRow() {
+        return visiblePlayerRow;
+    }
+
+    /**
+     * @return The column the player was seen on the last time the bot looked, only valid if the player was visible.
+     */
+    public int getVisiblePlayerColumn() {
+        return visiblePlayerColumn;
+    }
+
     /**
-     * Sets the visible map to a new map.
-     *
-     * @param visibleMap the new map that the bot will be able to view.
+     * Looks for the player within the area visible to the bot, recording where the player is if they are seen.
+     * @return True if the bot can see the player.
      */
-    public void updateVisibleMap(String visibleMap) {
-        this.visibleMap = visibleMap;
+    public boolean lookForPlayer() {
+        playerVisible = player != null && canSee(player);
+
+        if (playerVisible) {
+            visiblePlayerRow = player.getRow();
+            visiblePlayerColumn = player.getColumn();
+        }
+
+        return playerVisible;
+    }
+
+    /**
+     * Checks if the given player is inside the square area visible to the bot and, if line of sight is required,
+     * that there are no walls between them.
+     * @param target the player the bot is looking for.
+     * @return True if the bot can see the target.
+     */
+    public boolean canSee(Player target) {
+        int rowDistance = Math.abs(target.getRow() - this.row);
+        int columnDistance = Math.abs(target.getColumn() - this.column);
+
+        if (rowDistance > viewRadius || columnDistance > viewRadius) {
+            return false;
+        }
+
+        return !lineOfSightRequired || hasLineOfSight(target.getRow(), target.getColumn());
+    }
+
+    /**
+     * Walks the straight line between the bot and the given cell, checking for walls along the way.
+     * @param targetRow the row of the cell being looked at.
+     * @param targetColumn the column of the cell being looked at.
+     * @return True if none of the cells between the bot and the given cell are walls.
+     */
+    private boolean hasLineOfSight(int targetRow, int targetColumn) {
+        int rowDistance = Math.abs(targetRow - this.row);
+        int columnDistance = Math.abs(targetColumn - this.column);
+        int rowStep = targetRow > this.row ? 1 : -1;
+        int columnStep = targetColumn > this.column ? 1 : -1;
+        int error = columnDistance - rowDistance;
+
+        if (rowDistance == 0 && columnDistance == 0) {
+            return true;
+        }
+
+        int i = this.row;
+        int j = this.column;
+        while (true) {
+            int doubleError = 2 * error;
+            if (doubleError > -rowDistance) {
+                error -= rowDistance;
+                j += columnStep;
+            }
+            if (doubleError < columnDistance) {
+                error += columnDistance;
+                i += rowStep;
+            }
+
+            if (i == targetRow && j == targetColumn) {
+                return true;
+            } else if (gameMap.isWall(i, j)) {
+                return false;
+            }
+        }
     }
 
     /**
@@ -66,7 +232,7 @@ public class BotPlayer extends Player {
     }
 
     /**
-     * If the bot can see the player in the game, then it will chase the player,
+     * If the bot saw the player the last time it looked, then it will chase the player to where it saw them,
      * otherwise it will move randomly, in an attempt to find the player.
      */
     public void moveBot() {
@@ -78,67 +244,63 @@ public class BotPlayer extends Player {
     }
 
     /**
-     * Loops through the map visible to the bot and checks for the player.
-     * @return True if the player is in within the map that the bot can view.
+     * @return True if the player was within the area visible to the bot the last time it looked.
      */
     private boolean isPlayerVisible() {
-        for (int i = 0; i < getVisibleMap().length(); i++) {
-            if (getVisibleMap().charAt(i) == 'P') {
-                return true;
-            }
-        }
-
-        return false;
+        return playerVisible && player != null;
     }
 
     /**
      * Moves the bot in a random direction.
      */
     private void moveRandomDirection() {
-        move(DIRECTIONS[new Random().nextInt(DIRECTIONS.length)]);
+        move(DIRECTIONS[gameMap.getRandom().nextInt(DIRECTIONS.length)]);
     }
 
     /**
-     * Calculates and performs the best move to make in order to chase the player.
+     * Moves the bot one step along the shortest walkable path to the cell it last saw the player on, as the bot
+     * does not know where the player has gone since. If the cell cannot be reached from the position of the bot,
+     * the bot moves randomly instead.
      */
     private void moveTowardsPlayer() {
-        if (player.getRow() <= this.row && player.getColumn() <= this.column) {
-            // if player in top left quadrant of the map visible to bot, move bot in direction if the
-            // horizontal distance between the player and bot is greater than the vertical distance,
-            // move bot in direction W, otherwise move in direction N
-            if (Math.abs(player.getRow() - this.row) <= Math.abs(player.getColumn() - this.column)) {
-                move(DIRECTIONS[3]);
-            } else {
-                move(DIRECTIONS[0]);
-            }
-        } else if (player.getRow() <= this.row && player.getColumn() >= this.column) {
-            // if player in top right quadrant of the map visible to bot, move bot in direction if the
-            // horizontal distance between the player and bot is greater than the vertical distance,
-            // move bot in direction E, otherwise move in direction N
-            if (Math.abs(player.getRow() - this.row) <= Math.abs(player.getColumn() - this.column)) {
-                move(DIRECTIONS[1]);
-            } else {
-                move(DIRECTIONS[0]);
-            }
-        } else if (player.getRow() >= this.row && player.getColumn() >= this.column) {
-            // if player in bottom right quadrant of the map visible to bot, move bot in direction if the
-            // horizontal distance between the player and bot is greater than the vertical distance,
-            // move bot in direction E, otherwise move in direction S
-            if (Math.abs(player.getRow() - this.row) <= Math.abs(player.getColumn() - this.column)) {
-                move(DIRECTIONS[1]);
-            } else {
-                move(DIRECTIONS[2]);
-            }
-        } else if (player.getRow() >= this.row && player.getColumn() <= this.column) {
-            // if player in bottom left quadrant of the map visible to bot, move bot in direction if the
-            // horizontal distance between the player and bot is greater than the vertical distance,
-            // move bot in direction W, otherwise move in direction S
-            if (Math.abs(player.getRow() - this.row) <= Math.abs(player.getColumn() - this.column)) {
-                move(DIRECTIONS[3]);
-            } else {
-                move(DIRECTIONS[2]);
+        DistanceField distanceField = player.getDistanceField(visiblePlayerRow, visiblePlayerColumn);
+
+        int bestDistance = distanceField.getDistance(this.row, this.column);
+        char bestDirection = 0;
+
+        if (bestDistance == DistanceField.UNREACHABLE) {
+            moveRandomDirection();
+            return;
+        }
+
+        // choose the neighbouring cell that is closest to where the player was seen
+        for (char direction : DIRECTIONS) {
+            int distance = distanceField.getDistance(this.row + getRowOffset(direction),
+                    this.column + getColumnOffset(direction));
+
+            if (distance != DistanceField.UNREACHABLE && distance < bestDistance) {
+                bestDistance = distance;
+                bestDirection = direction;
             }
         }
+
+        move(bestDirection);
+    }
+
+    /**
+     * @param direction the direction of a movement.
+     * @return The change in row caused by moving in the given direction.
+     */
+    private static int getRowOffset(char direction) {
+        return direction == 'N' ? -1 : direction == 'S' ? 1 : 0;
+    }
+
+    /**
+     * @param direction the direction of a movement.
+     * @return The change in column caused by moving in the given direction.
+     */
+    private static int getColumnOffset(char direction) {
+        return direction == 'W' ? -1 : direction == 'E' ? 1 : 0;
     }
 
 }
@@ -3,9 +3,9 @@ package chat.system.game.entity;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
+import chat.system.game.main.GameCommand;
 import chat.system.game.map.Map;
 
 /**
@@ -13,10 +13,6 @@ import chat.system.game.map.Map;
  */
 public class HumanPlayer extends Player{
 
-    private final String[] COMMANDS = {"HELLO", "GOLD", "MOVE N", "MOVE E", "MOVE S", "MOVE W", "PICKUP", "LOOK", "EXIT"};
-
-    private ArrayList<String> availableCommands;
-
     private BufferedReader br;
 
     private int gold; // the amount of gold the player owns
@@ -28,9 +24,6 @@ public class HumanPlayer extends Player{
     public HumanPlayer(Map gameMap) {
         super(gameMap);
 
-        availableCommands = new ArrayList<String>();
-        availableCommands.addAll(Arrays.asList(COMMANDS));
-
         br = new BufferedReader(new InputStreamReader(System.in));
 
         gold = 0;
@@ -50,13 +43,36 @@ public class HumanPlayer extends Player{
         gold++;
     }
 
+    @Override
+    public int getStateSize() {
+        return super.getStateSize() + 4;
+    }
+
+    @Override
+    public void writeState(ByteBuffer buffer) {
+        super.writeState(buffer);
+        buffer.putInt(gold);
+    }
+
+    @Override
+    public void readState(ByteBuffer buffer) {
+        super.readState(buffer);
+
+        int savedGold = buffer.getInt();
+        if (savedGold < 0 || savedGold > gameMap.getTerrain().getGoldCount()) {
+            throw new IllegalArgumentException("The saved amount of gold " + savedGold + " is not possible on the map.");
+        }
+
+        gold = savedGold;
+    }
+
     /**
-     * Process the users command and return the command as a string as long as it is a valid command.
-     * @return the processed command or "Invalid" if the command is not recognised.
+     * Reads the users command and decodes it.
+     * @return the command entered, or INVALID if the command is not recognised.
      */
-    public String getNextAction() {
+    public GameCommand getNextAction() {
         while (true) {
-            String command = getInputFromPlayer().trim().toUpperCase();
+            String command = getInputFromPlayer();
 
             if (command == null) {
                 try {
@@ -69,11 +85,7 @@ public class HumanPlayer extends Player{
                 System.exit(0);
             }
 
-            if (availableCommands.contains(command)) {
-                return command;
-            } else {
-                return "Invalid";
-            }
+            return GameCommand.decode(command.trim().toUpperCase());
         }
     }
 
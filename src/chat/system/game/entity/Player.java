@@ -1,7 +1,8 @@
 package chat.system.game.entity;
 
-import java.util.Random;
+import java.nio.ByteBuffer;
 
+import chat.system.game.map.DistanceField;
 import chat.system.game.map.Map;
 
 /**
@@ -10,12 +11,20 @@ import chat.system.game.map.Map;
  */
 public class Player {
 
+    // the number of cells the distances to a player are measured over in each direction, bots further away
+    // than this cannot find a path to the player
+    private static final int CHASE_RADIUS = 32;
+
     protected Map gameMap; // the map the player is playing in
 
     // player position
     protected int row;
     protected int column;
 
+    private DistanceField distanceField; // distances to where this player was seen, shared by every bot chasing it
+
+    SpatialIndex spatialIndex; // the index of the game the player is in, null if it has not been added to one
+
     /**
      * Constructor that assigns the map argument to the map object and also
      * assigns the player a column and row value.
@@ -28,17 +37,74 @@ public class Player {
     }
 
     /**
-     * Places the player at random coordinates in the map.
-     * <br></br>
-     * If the player is on a wall character or on gold character, generate new coordinates.
+     * Places the player on a random cell of the map that is neither a wall nor gold.
      */
     public void initialisePlayerPosition() {
-        Random rand = new Random();
+        initialisePlayerPosition(0);
+    }
+
+    /**
+     * Places the player on a random cell of the map that is neither a wall nor gold, and that is at least the given
+     * distance from every other player given, measured as the larger of the row and column differences.
+     * <br></br>
+     * A random chunk of the map is picked, weighted by its number of free cells, then a random cell from its list of
+     * free cells, so every free cell is equally likely. If the cell is too close to another player the following
+     * cells of the chunk are tried in turn, then the cells of the following chunks, so only the chunks needed are
+     * ever read. If no cell is far enough away, the first cell picked is used.
+     * @param minimumDistance the smallest distance allowed between this player and the others.
+     * @param others the players this player must be placed away from.
+     */
+    public void initialisePlayerPosition(int minimumDistance, Player... others) {
+        int columns = gameMap.getNumberOfColumns();
+        int chunkCount = gameMap.getSpawnChunkCount();
+        int firstChunk = gameMap.getRandomSpawnChunk();
+        if (firstChunk < 0) {
+            throw new IllegalStateException("There are no free cells in map " + gameMap.getMapName() + ".");
+        }
+
+        int cell = -1;
+
+        for (int c = 0; c < chunkCount; c++) {
+            int chunk = (firstChunk + c) % chunkCount;
+            int cellCount = gameMap.getSpawnCellCount(chunk);
+            if (cellCount == 0) {
+                continue;
+            }
+
+            int first = gameMap.getRandom().nextInt(cellCount);
+            if (cell < 0) {
+                cell = gameMap.getSpawnCell(chunk, first);
+            }
+
+            for (int k = 0; k < cellCount; k++) {
+                int candidate = gameMap.getSpawnCell(chunk, (first + k) % cellCount);
 
-        do {
-            row = rand.nextInt(gameMap.getNumberOfRows());
-            column = rand.nextInt(gameMap.getNumberOfColumns());
-        } while (gameMap.getMap()[row][column] == '#' || gameMap.getMap()[row][column] == 'G');
+                if (isAwayFrom(candidate / columns, candidate % columns, minimumDistance, others)) {
+                    setPosition(candidate / columns, candidate % columns);
+                    return;
+                }
+            }
+        }
+
+        setPosition(cell / columns, cell % columns);
+    }
+
+    /**
+     * @param cellRow the row of the cell being checked.
+     * @param cellColumn the column of the cell being checked.
+     * @param minimumDistance the smallest distance allowed between the cell and the others.
+     * @param others the other players.
+     * @return True if the cell is at least the given distance from each of the other players.
+     */
+    private boolean isAwayFrom(int cellRow, int cellColumn, int minimumDistance, Player[] others) {
+        for (Player other : others) {
+            int distance = Math.max(Math.abs(other.getRow() - cellRow), Math.abs(other.getColumn() - cellColumn));
+            if (distance < minimumDistance) {
+                return false;
+            }
+        }
+
+        return true;
     }
 
     /**
@@ -55,12 +121,29 @@ public class Player {
         return column;
     }
 
+    /**
+     * Gets the walking distances to a cell this player was seen on, rebuilding them only if they were last
+     * requested for a different cell. Bots that look for the player at the same time see them on the same cell, so
+     * they share a single search.
+     * @param seenRow the row the player was seen on.
+     * @param seenColumn the column the player was seen on.
+     * @return The distance field measured to the cell.
+     */
+    public DistanceField getDistanceField(int seenRow, int seenColumn) {
+        if (distanceField == null) {
+            distanceField = new DistanceField(gameMap, CHASE_RADIUS);
+        }
+
+        distanceField.update(seenRow, seenColumn);
+        return distanceField;
+    }
+
     /**
      * Updates the row field.
      * @param row the new value of the row the player is on.
      */
     public void setRow(int row) {
-        this.row = row;
+        setPosition(row, column);
     }
 
     /**
@@ -68,7 +151,57 @@ public class Player {
      * @param column the new value of the column the player is on.
      */
     public void setColumn(int column) {
+        setPosition(row, column);
+    }
+
+    /**
+     * Updates the row and column fields, and the index of the game if the player is in one.
+     * @param row the new value of the row the player is on.
+     * @param column the new value of the column the player is on.
+     */
+    public void setPosition(int row, int column) {
+        int previousRow = this.row;
+        int previousColumn = this.column;
+
+        this.row = row;
         this.column = column;
+
+        if (spatialIndex != null) {
+            spatialIndex.moved(this, previousRow, previousColumn);
+        }
+    }
+
+    /**
+     * @return The number of bytes written by {@link #writeState(ByteBuffer)}.
+     */
+    public int getStateSize() {
+        return 8;
+    }
+
+    /**
+     * Writes the state of the player to a buffer, so it can be saved and restored later.
+     * @param buffer the buffer written to, with at least {@link #getStateSize()} bytes remaining.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putInt(row);
+        buffer.putInt(column);
+    }
+
+    /**
+     * Restores the state of the player written by {@link #writeState(ByteBuffer)}.
+     * @param buffer the buffer read from.
+     * @throws IllegalArgumentException If the saved position is outside the map or on a wall.
+     */
+    public void readState(ByteBuffer buffer) {
+        int savedRow = buffer.getInt();
+        int savedColumn = buffer.getInt();
+
+        if (gameMap.isWall(savedRow, savedColumn)) {
+            throw new IllegalArgumentException("The saved position " + savedRow + ", " + savedColumn
+                    + " is not a free cell of the map.");
+        }
+
+        setPosition(savedRow, savedColumn);
     }
 
     /**
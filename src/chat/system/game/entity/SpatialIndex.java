@@ -0,0 +1,183 @@
+package chat.system.game.entity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps track of where every player in a game is, so the players near a position can be found without checking
+ * every player in the game.
+ * <br></br>
+ * The map is divided into square buckets of cells and each player is stored in the bucket containing its position.
+ * Players added to the index update it themselves whenever they move, so it is always up to date.
+ */
+public class SpatialIndex {
+
+    private static final int BUCKET_SIZE = 8; // the number of cells along each side of a bucket
+
+    private int rows;
+    private int columns;
+
+    private int bucketRows;
+    private int bucketColumns;
+
+    private List<List<Player>> buckets; // the players in each bucket, a bucket is null until a player enters it
+
+    private int size;
+
+    /**
+     * Constructor for an empty index covering a map of the given size.
+     * @param rows the number of rows in the map.
+     * @param columns the number of columns in the map.
+     */
+    public SpatialIndex(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+
+        bucketRows = (rows + BUCKET_SIZE - 1) / BUCKET_SIZE;
+        bucketColumns = (columns + BUCKET_SIZE - 1) / BUCKET_SIZE;
+
+        buckets = new ArrayList<List<Player>>(bucketRows * bucketColumns);
+        for (int i = 0; i < bucketRows * bucketColumns; i++) {
+            buckets.add(null);
+        }
+
+        size = 0;
+    }
+
+    /**
+     * @return The number of players in the index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a player to the index, from now on the player will update the index whenever it moves.
+     * @param player the player to be added, must not already be in an index.
+     */
+    public void add(Player player) {
+        if (player.spatialIndex != null) {
+            throw new IllegalStateException("The player is already in an index.");
+        }
+
+        player.spatialIndex = this;
+        getBucket(player.getRow(), player.getColumn(), true).add(player);
+        size++;
+    }
+
+    /**
+     * Removes a player from the index.
+     * @param player the player to be removed.
+     */
+    public void remove(Player player) {
+        if (player.spatialIndex != this) {
+            return;
+        }
+
+        player.spatialIndex = null;
+        getBucket(player.getRow(), player.getColumn(), false).remove(player);
+        size--;
+    }
+
+    /**
+     * Moves a player to the bucket of its new position, called by the player whenever its position changes.
+     * @param player the player that has moved.
+     * @param previousRow the row the player was on before it moved.
+     * @param previousColumn the column the player was on before it moved.
+     */
+    void moved(Player player, int previousRow, int previousColumn) {
+        int previousBucket = getBucketIndex(previousRow, previousColumn);
+        int bucket = getBucketIndex(player.getRow(), player.getColumn());
+
+        if (previousBucket != bucket) {
+            buckets.get(previousBucket).remove(player);
+            getBucket(player.getRow(), player.getColumn(), true).add(player);
+        }
+    }
+
+    /**
+     * Finds every player inside a rectangle of cells.
+     * @param top the first row of the rectangle.
+     * @param left the first column of the rectangle.
+     * @param bottom the last row of the rectangle.
+     * @param right the last column of the rectangle.
+     * @param found the list the players found are added to.
+     */
+    public void findInRectangle(int top, int left, int bottom, int right, List<Player> found) {
+        int firstBucketRow = Math.max(0, top) / BUCKET_SIZE;
+        int lastBucketRow = Math.min(rows - 1, bottom) / BUCKET_SIZE;
+        int firstBucketColumn = Math.max(0, left) / BUCKET_SIZE;
+        int lastBucketColumn = Math.min(columns - 1, right) / BUCKET_SIZE;
+
+        for (int i = firstBucketRow; i <= lastBucketRow; i++) {
+            for (int j = firstBucketColumn; j <= lastBucketColumn; j++) {
+                List<Player> bucket = buckets.get(i * bucketColumns + j);
+                if (bucket == null) {
+                    continue;
+                }
+
+                for (int k = 0; k < bucket.size(); k++) {
+                    Player player = bucket.get(k);
+                    if (player.getRow() >= top && player.getRow() <= bottom
+                            && player.getColumn() >= left && player.getColumn() <= right) {
+                        found.add(player);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds a player of the given type on a cell.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @param type the type of player to look for, e.g. BotPlayer.class.
+     * @return A player of the given type on the cell, or null if there is none.
+     */
+    public <T extends Player> T getAt(int row, int column, Class<T> type) {
+        List<Player> bucket = buckets.get(getBucketIndex(row, column));
+        if (bucket == null) {
+            return null;
+        }
+
+        for (int k = 0; k < bucket.size(); k++) {
+            Player player = bucket.get(k);
+            if (player.getRow() == row && player.getColumn() == column && type.isInstance(player)) {
+                return type.cast(player);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param row the row of a cell, positions outside the map use the nearest bucket.
+     * @param column the column of a cell, positions outside the map use the nearest bucket.
+     * @return The index of the bucket containing the cell.
+     */
+    private int getBucketIndex(int row, int column) {
+        int bucketRow = Math.min(Math.max(row, 0), rows - 1) / BUCKET_SIZE;
+        int bucketColumn = Math.min(Math.max(column, 0), columns - 1) / BUCKET_SIZE;
+
+        return bucketRow * bucketColumns + bucketColumn;
+    }
+
+    /**
+     * @param row the row of a cell.
+     * @param column the column of a cell.
+     * @param create if true, the bucket is created if it does not exist yet.
+     * @return The list of players in the bucket containing the cell.
+     */
+    private List<Player> getBucket(int row, int column, boolean create) {
+        int index = getBucketIndex(row, column);
+
+        List<Player> bucket = buckets.get(index);
+        if (bucket == null && create) {
+            bucket = new ArrayList<Player>(2);
+            buckets.set(index, bucket);
+        }
+
+        return bucket;
+    }
+
+}
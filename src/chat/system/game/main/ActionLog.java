@@ -0,0 +1,90 @@
+package chat.system.game.main;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32;
+
+/**
+ * Records every action of a game, and a checksum of its result, to an append-only file so the game can be
+ * replayed by {@link GameReplay}.
+ * <br></br>
+ * The file starts with a header giving the map name, the seed of the game and its view radius, followed by one
+ * record per action: the one byte code of the {@link GameCommand} and the CRC32 of the result. Version 1 logs stored
+ * the text of each action instead of its code, and can still be replayed.
+ */
+public class ActionLog implements Closeable {
+
+    static final int MAGIC = 0x4353414C; // "CSAL"
+    static final int VERSION = 2;
+    static final int TEXT_VERSION = 1; // the version that stored each action as text
+
+    private DataOutputStream output;
+
+    private int actionCount;
+
+    /**
+     * Creates a new log file for a game and writes its header, any existing file is replaced.
+     * @param path the path of the log file.
+     * @param game the game being logged, its seed must not have been used for any random choices yet.
+     * @throws IOException If the file cannot be written.
+     */
+    public ActionLog(Path path, GameLogic game) throws IOException {
+        output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        output.writeUTF(game.getGameMap().getMapName());
+        output.writeLong(game.getSeed());
+        output.writeInt(game.getLookRadius());
+        output.flush();
+
+        actionCount = 0;
+    }
+
+    /**
+     * @return The number of actions recorded so far.
+     */
+    public int getActionCount() {
+        return actionCount;
+    }
+
+    /**
+     * Appends an action and its result to the log, the record is written to the file before returning.
+     * @param command the command the player entered.
+     * @param result the outcome of the command.
+     * @throws IOException If the record cannot be written.
+     */
+    public void record(GameCommand command, String result) throws IOException {
+        output.writeByte(command.getCode());
+        output.writeInt(checksum(result));
+        output.flush();
+
+        actionCount++;
+    }
+
+    /**
+     * @param result the outcome of an action.
+     * @return The CRC32 of the result, as stored in the log.
+     */
+    static int checksum(String result) {
+        CRC32 crc = new CRC32();
+        crc.update(result.getBytes(StandardCharsets.UTF_8));
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Closes the log file.
+     * @throws IOException If the file cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+}
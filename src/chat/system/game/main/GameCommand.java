@@ -0,0 +1,168 @@
+package chat.system.game.main;
+
+/**
+ * The commands a player can enter in the game.
+ * <br></br>
+ * Text entered by a player is turned into a command once, by {@link #decode(CharSequence)}, and the game only works
+ * with the decoded command from then on. Each command also has a one byte code, used to store commands compactly.
+ * <br></br>
+ * The codes are written to action logs, so the code of a command must never change and the code of a removed
+ * command must never be reused, or recorded games would replay different commands. A new command takes the next
+ * unused code, wherever it is declared.
+ */
+public enum GameCommand {
+
+    HELLO("HELLO", 0),
+    GOLD("GOLD", 1),
+    MOVE_NORTH("MOVE N", 'N', 2),
+    MOVE_EAST("MOVE E", 'E', 3),
+    MOVE_SOUTH("MOVE S", 'S', 4),
+    MOVE_WEST("MOVE W", 'W', 5),
+    PICKUP("PICKUP", 6),
+    LOOK("LOOK", 7),
+    EXIT("EXIT", 8),
+    SUBSCRIBE("SUBSCRIBE", 9),
+    UNSUBSCRIBE("UNSUBSCRIBE", 10),
+    INVALID("Invalid", 11); // any text that is not a command
+
+    private static final GameCommand[] CODES = new GameCommand[256]; // the commands indexed by code
+
+    static {
+        for (GameCommand command : values()) {
+            if (CODES[command.code] != null) {
+                throw new IllegalStateException(command + " has the same code as " + CODES[command.code] + ".");
+            }
+
+            CODES[command.code] = command;
+        }
+    }
+
+    private final String text;
+    private final char direction; // the direction of a move, or 0 for any other command
+    private final int code; // the code stored for the command, from 0 to 255
+
+    GameCommand(String text, int code) {
+        this(text, (char) 0, code);
+    }
+
+    GameCommand(String text, char direction, int code) {
+        this.text = text;
+        this.direction = direction;
+        this.code = code;
+    }
+
+    /**
+     * @return The text a player enters for the command.
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return True if the command moves the player.
+     */
+    public boolean isMove() {
+        return direction != 0;
+    }
+
+    /**
+     * @return The direction of a move, N, E, S or W.
+     */
+    public char getDirection() {
+        return direction;
+    }
+
+    /**
+     * @return The code of the command.
+     */
+    public byte getCode() {
+        return (byte) code;
+    }
+
+    /**
+     * @param code the code of a command, as returned by {@link #getCode()}.
+     * @return The command with the code, or INVALID if there is no such command.
+     */
+    public static GameCommand fromCode(int code) {
+        GameCommand command = code >= 0 && code < CODES.length ? CODES[code] : null;
+        return command != null ? command : INVALID;
+    }
+
+    /**
+     * Decodes the text entered by a player. The first character picks the only command the text can be, so the text
+     * is read once and nothing is allocated.
+     * @param input the text entered, which must match the command exactly, e.g. "MOVE N".
+     * @return The command entered, or INVALID if the text is not a command.
+     */
+    public static GameCommand decode(CharSequence input) {
+        if (input.length() == 0) {
+            return INVALID;
+        }
+
+        GameCommand candidate;
+        switch (input.charAt(0)) {
+            case 'H': candidate = HELLO;
+                      break;
+
+            case 'G': candidate = GOLD;
+                      break;
+
+            case 'M': candidate = input.length() == 6 ? getMove(input.charAt(5)) : INVALID;
+                      break;
+
+            case 'P': candidate = PICKUP;
+                      break;
+
+            case 'L': candidate = LOOK;
+                      break;
+
+            case 'E': candidate = EXIT;
+                      break;
+
+            case 'S': candidate = SUBSCRIBE;
+                      break;
+
+            case 'U': candidate = UNSUBSCRIBE;
+                      break;
+
+            default: candidate = INVALID;
+                     break;
+        }
+
+        return candidate != INVALID && matches(input, candidate.text) ? candidate : INVALID;
+    }
+
+    /**
+     * @param direction the last character of a move command.
+     * @return The move in the direction, or INVALID if it is not a direction.
+     */
+    private static GameCommand getMove(char direction) {
+        switch (direction) {
+            case 'N': return MOVE_NORTH;
+            case 'E': return MOVE_EAST;
+            case 'S': return MOVE_SOUTH;
+            case 'W': return MOVE_WEST;
+            default: return INVALID;
+        }
+    }
+
+    /**
+     * @param input the text entered.
+     * @param text the text of a command.
+     * @return True if the input is exactly the text of the command.
+     */
+    private static boolean matches(CharSequence input, String text) {
+        if (input.length() != text.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < text.length(); i++) {
+            if (input.charAt(i) != text.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+}
@@ -1,242 +1,255 @@
-package chat.system.game.main;
-
-import chat.system.game.entity.BotPlayer;
-import chat.system.game.entity.HumanPlayer;
-import chat.system.game.entity.Player;
-import chat.system.game.map.Map;
-
-/**
- * Contains the main game logic.
- */
-public class GameLogic {
-
-    private Map map;
-
-    private HumanPlayer humanPlayer;
-    private BotPlayer bot;
-
-    private boolean running;
-
-    /**
-     * Default constructor.
-     */
-    public GameLogic() {
-        running = false;
-
-        map = new Map();
-
-        humanPlayer = new HumanPlayer(map);
-
-        bot = new BotPlayer(map, humanPlayer);
-    }
-
-    /**
-     * @return Map object of the game.
-     */
-    public Map getGameMap() {
-        return map;
-    }
-
-    /**
-     * @return If the game is running.
-     */
-    public boolean gameRunning() {
-        return running;
-    }
-
-    /**
-     * @return Gold required to win.
-     */
-    protected String hello() {
-        return String.valueOf(map.getGoldRequired());
-    }
-
-    /**
-     * @return Gold currently owned.
-     */
-    protected String gold() {
-        return String.valueOf(humanPlayer.getGold());
-    }
-
-    /**
-     * Checks if movement is legal and updates player's location on the map.
-     * @param player the player object that will be moved, i.e. the human player or the bot
-     * @param direction the direction of the movement.
-     * @return a string that says the the move was either a success or it failed.
-     */
-    protected String move(Player player, char direction) {
-        int previousRow = player.getRow();
-        int previousColumn = player.getColumn();
-
-        try {
-            if (player instanceof HumanPlayer) {
-                humanPlayer.move(direction);
-            } else if (player instanceof BotPlayer) {
-                bot.moveBot();
-            }
-
-            // if the move is unsuccessful, move the player back
-            if (map.getMap()[player.getRow()][player.getColumn()] == '#') {
-                player.setRow(previousRow);
-                player.setColumn(previousColumn);
-
-                return "Fail";
-            } else {
-                return "Success";
-            }
-        } catch (ArrayIndexOutOfBoundsException e) {
-            // prevent the player from moving outside the boundary of the map,
-            // even if the the map does not use a # character for the walls
-            player.setRow(previousRow);
-            player.setColumn(previousColumn);
-
-            return "Fail";
-        }
-    }
-
-    /**
-     * Perform the PICKUP command, updating the map and the player's gold amount.
-     * @return If the player successfully picked-up gold.
-     */
-    protected String pickup() {
-        // the character at the players position in the map
-        char mapCharacter = map.getMap()[humanPlayer.getRow()][humanPlayer.getColumn()];
-        if (mapCharacter== 'G') {
-            // remove the gold from the map if the pickup is successful
-            map.changeCharacter(humanPlayer.getRow(), humanPlayer.getColumn(), '.');
-            humanPlayer.incrementGold();
-            return "Success. Gold owned:" + gold();
-        } else {
-            return "Fail. Gold owned: " + gold();
-        }
-    }
-
-    /**
-     * Converts the map from a 2D character array to a single string.
-     * @param player the player that is using the method.
-     * @return A String representation of the game map.
-     */
-    protected String look(Player player) {
-        int outputSize = 5;
-        String outputMap = "";
-
-        int centre = (outputSize - 1) / 2;
-
-        // loop through a 5x5 grid within the game map with the given player at the centre
-        for (int i = player.getRow() - centre; i < player.getRow() - centre + outputSize; i++) {
-            for (int j = player.getColumn() - centre; j < player.getColumn() - centre + outputSize; j++) {
-                try {
-                    if (i == humanPlayer.getRow() && j == humanPlayer.getColumn()) {
-                        // put a P at the human player position of the player if the player is in the 5x5 grid
-                        outputMap += 'P';
-                    } else if (i == bot.getRow() && j == bot.getColumn()) {
-                        // put a B at the bot player position of the bot if the bot is in the 5x5 grid
-                        outputMap += 'B';
-                    } else {
-                        // otherwise, put the corresponding character from the map into the 5x5 grid
-                        outputMap += map.getMap()[i][j];
-                    }
-                } catch (ArrayIndexOutOfBoundsException e) {
-                    // display any visible areas outside the map as a #
-                    outputMap += '#';
-                }
-            }
-
-            outputMap += "\n";
-        }
-
-        return outputMap;
-    }
-
-    /**
-     * Checks the winning condition of the player.
-     * @return String which says whether or not the player has won or lost.
-     */
-    protected String exit() {
-        char characterUnderPlayer = map.getMap()[humanPlayer.getRow()][humanPlayer.getColumn()];
-        if (humanPlayer.getGold() >= map.getGoldRequired() && characterUnderPlayer == 'E') {
-            return "WIN\nCongratulations you collected enough gold to escape the dungeon.";
-        } else {
-            return "LOSE";
-        }
-    }
-
-    /**
-     * Quits the game, shutting down the program.
-     * @param message the message displayed when the game quits.
-     */
-    protected void quitGame(String message) {
-        System.out.println("\n" + message + "\n");
-        System.exit(0);
-    }
-
-    /**
-     * Provides the feedback to the user about their chosen action.
-     * @param action the command the user inputs.
-     * @return the outcome of the input action
-     */
-    public String processAction(String action) {
-        String output = "";
-        if (action.equals("HELLO")) {
-            output = "Gold to win: " + hello();
-        } else if (action.equals("GOLD")) {
-            output = "Gold owned: " + gold();
-        } else if (action.contains("MOVE ")) {
-            output = move(humanPlayer, action.charAt(action.length() - 1));
-        } else if (action.equals("PICKUP")) {
-            output = pickup();
-        } else if (action.equals("LOOK")) {
-            output = "\n" + look(humanPlayer);
-        } else if (action.equals("EXIT")) {
-            output = exit();
-        } else {
-            return "Invalid";
-        }
-
-        // perform the bot player move
-        botMove();
-
-        if (!getBotMoveResult().equals("Not caught")) {
-            output = getBotMoveResult();
-        }
-
-        return output;
-    }
-
-    /**
-     * Performs the bot player turn.
-     */
-    protected void botMove() {
-        if (bot.getMapRequired()) {
-            bot.updateVisibleMap(look(bot));
-        } else {
-            move(bot, '0'); // '0' passed as direction as it is not required by the bot
-        }
-
-        bot.toggleMapRequired();
-    }
-
-    /**
-     * Gets the result of the bot player move.
-     *
-     * @return "Not caught" if the player has not been caught by the bot player, or the capture message
-     * if the player has been caught.
-     */
-    protected String getBotMoveResult() {
-        String botMoveResult = "Not caught";
-
-        if (bot.getRow() == humanPlayer.getRow() && bot.getColumn() == humanPlayer.getColumn()) {
-            botMoveResult = "You were caught by the bot, you lose.";
-        }
-
-        return botMoveResult;
-    }
-
-    /**
-     * Runs the game.
-     */
-    public void runGame() {
-        running = true;
-    }
-
-}
+package chat.system.game.main;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import chat.system.game.entity.BotPlayer;
+import chat.system.game.entity.HumanPlayer;
+import chat.system.game.map.Map;
+import chat.system.game.map.Terrain;
+
+/**
+ * Contains the main game logic, a single human player against a bot.
+ */
+public class GameLogic extends GameWorld {
+
+    public static final int SPECTATOR_RADIUS = 5; // how far around the player spectators can see
+
+    private static final int SNAPSHOT_MAGIC = 0x43534753; // "CSGS"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private HumanPlayer humanPlayer;
+    private BotPlayer bot;
+
+    private long turn; // the number of turns played so far
+
+    private ActionLog actionLog; // records every action of the human player, null if the game is not recorded
+
+    private char[] frameCells; // the cells of the most recent spectator frame, reused for every frame
+    private StringBuilder frame;
+
+    /**
+     * Default constructor, the game is played on the default map.
+     */
+    public GameLogic() {
+        this(Terrain.DEFAULT);
+    }
+
+    /**
+     * Constructor for a game played on the given terrain.
+     * @param terrain the terrain of the map, shared with any other games played on it.
+     */
+    public GameLogic(Terrain terrain) {
+        this(terrain, System.nanoTime());
+    }
+
+    /**
+     * Constructor for a game played on the given terrain whose random choices are made from the given seed, so
+     * the same seed and actions always give the same game.
+     * @param terrain the terrain of the map, shared with any other games played on it.
+     * @param seed the seed of the random generator of the game.
+     */
+    public GameLogic(Terrain terrain, long seed) {
+        super(new Map(terrain, seed));
+
+        turn = 0;
+
+        int frameSize = ViewportRenderer.getViewSize(SPECTATOR_RADIUS);
+        frameCells = new char[frameSize * frameSize];
+        frame = new StringBuilder();
+
+        humanPlayer = new HumanPlayer(map);
+
+        bot = new BotPlayer(map, humanPlayer);
+
+        entities.add(bot);
+        entities.add(humanPlayer);
+    }
+
+    /**
+     * Records every action processed from now on, along with its result, to the given log.
+     * @param actionLog the log to record to, or null to stop recording.
+     */
+    public void setActionLog(ActionLog actionLog) {
+        this.actionLog = actionLog;
+    }
+
+    /**
+     * @return The gold the human player has collected.
+     */
+    public int getPlayerGold() {
+        return humanPlayer.getGold();
+    }
+
+    /**
+     * @return The number of turns played so far.
+     */
+    public long getTurn() {
+        return turn;
+    }
+
+    /**
+     * Saves the state of the game, i.e. the positions of the players, the gold collected, the state of the random
+     * generator and what the bot is about to do, so the game can be carried on later from this point.
+     * @return The snapshot of the game.
+     */
+    public byte[] createSnapshot() {
+        byte[] mapName = map.getMapName().getBytes(StandardCharsets.UTF_8);
+
+        int size = 4 + 4 + 2 + mapName.length + 8 + 4 + map.getStateSize() + humanPlayer.getStateSize()
+                + bot.getStateSize();
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(SNAPSHOT_MAGIC);
+        buffer.putInt(SNAPSHOT_VERSION);
+        buffer.putShort((short) mapName.length);
+        buffer.put(mapName);
+        buffer.putLong(turn);
+        buffer.putInt(getLookRadius());
+
+        map.writeState(buffer);
+        humanPlayer.writeState(buffer);
+        bot.writeState(buffer);
+
+        return buffer.array();
+    }
+
+    /**
+     * Carries on a game from a snapshot, replacing the current state of this game. Every length and position in
+     * the snapshot is checked before it is used, but if the snapshot is invalid part of it may already have been
+     * restored, so the game should not be played.
+     * @param snapshot a snapshot created by {@link #createSnapshot()} of a game on the same map.
+     * @throws IllegalArgumentException If the snapshot is not of a game on this map, or is incomplete or invalid.
+     */
+    public void restoreSnapshot(byte[] snapshot) {
+        ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+
+        if (snapshot.length < 10 || buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Not a snapshot of a game.");
+        }
+
+        // the length is written as a short, but names up to 65535 bytes long are allowed
+        int mapNameLength = buffer.getShort() & 0xFFFF;
+        if (mapNameLength > buffer.remaining()) {
+            throw new IllegalArgumentException("The snapshot is incomplete.");
+        }
+
+        byte[] mapName = new byte[mapNameLength];
+        buffer.get(mapName);
+        if (!Arrays.equals(mapName, map.getMapName().getBytes(StandardCharsets.UTF_8))) {
+            String name = new String(mapName, StandardCharsets.UTF_8);
+            throw new IllegalArgumentException("The snapshot is of a game on " + name + ", not " + map.getMapName() + ".");
+        }
+
+        try {
+            long savedTurn = buffer.getLong();
+            if (savedTurn < 0) {
+                throw new IllegalArgumentException("The snapshot has an invalid turn " + savedTurn + ".");
+            }
+
+            setLookRadius(buffer.getInt());
+            turn = savedTurn;
+
+            map.readState(buffer);
+            humanPlayer.readState(buffer);
+            bot.readState(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("The snapshot is incomplete.");
+        }
+    }
+
+    /**
+     * @return The state update for the human player after the most recent turn, or null if they are not subscribed.
+     */
+    public String getStateDelta() {
+        return getStateDelta(humanPlayer, turn);
+    }
+
+    /**
+     * Encodes the surroundings of the human player after the most recent turn for the users spectating the game.
+     * Every frame is complete, so a spectator that misses frames is still shown the right state by the next one.
+     * @return The encoded frame, FRAME turn radius top left gold cells, in the same layout as a BASE state update.
+     */
+    public String getSpectatorFrame() {
+        renderer.renderCells(map, humanPlayer.getRow(), humanPlayer.getColumn(), SPECTATOR_RADIUS, entities,
+                frameCells);
+
+        frame.setLength(0);
+        frame.append("FRAME ").append(turn).append(' ').append(SPECTATOR_RADIUS).append(' ')
+                .append(humanPlayer.getRow() - SPECTATOR_RADIUS).append(' ')
+                .append(humanPlayer.getColumn() - SPECTATOR_RADIUS).append(' ')
+                .append(humanPlayer.getGold()).append(' ').append(frameCells);
+
+        return frame.toString();
+    }
+
+    /**
+     * Provides the feedback to the user about their chosen action.
+     * @param action the command the user inputs.
+     * @return the outcome of the input action
+     */
+    public String processAction(String action) {
+        return processAction(GameCommand.decode(action));
+    }
+
+    /**
+     * Provides the feedback to the user about a command that has already been decoded.
+     * @param command the command the user entered.
+     * @return the outcome of the command
+     */
+    public String processAction(GameCommand command) {
+        String output = performAction(humanPlayer, command);
+        if (command != GameCommand.INVALID) {
+            // perform the bot player move
+            botMove(bot);
+            turn++;
+
+            if (!getBotMoveResult().equals("Not caught")) {
+                output = getBotMoveResult();
+            }
+        }
+
+        recordAction(command, output);
+
+        return output;
+    }
+
+    /**
+     * Appends an action to the action log, if the game is being recorded. If the log cannot be written the game
+     * carries on without being recorded.
+     * @param command the command the user entered.
+     * @param output the outcome of the command.
+     */
+    private void recordAction(GameCommand command, String output) {
+        if (actionLog == null) {
+            return;
+        }
+
+        try {
+            actionLog.record(command, output);
+        } catch (IOException e) {
+            System.err.println("\nError: the action log could not be written, recording stopped: " + e.getMessage());
+            actionLog = null;
+        }
+    }
+
+    /**
+     * Gets the result of the bot player move.
+     *
+     * @return "Not caught" if the player has not been caught by the bot player, or the capture message
+     * if the player has been caught.
+     */
+    protected String getBotMoveResult() {
+        String botMoveResult = "Not caught";
+
+        if (bot.getRow() == humanPlayer.getRow() && bot.getColumn() == humanPlayer.getColumn()) {
+            botMoveResult = "You were caught by the bot, you lose.";
+        }
+
+        return botMoveResult;
+    }
+
+}
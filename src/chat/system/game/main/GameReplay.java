@@ -0,0 +1,178 @@
+package chat.system.game.main;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import chat.system.game.map.MapFile;
+import chat.system.game.map.Terrain;
+
+/**
+ * Replays a game recorded by an {@link ActionLog}, checking that every action gives exactly the same result as
+ * when it was recorded.
+ * <br></br>
+ * The game is rebuilt from its seed and the actions are performed one after another with no waiting, so a replay
+ * can be used to check a change to the game has not changed its behaviour and to compare the speed of the game
+ * before and after a change.
+ */
+public class GameReplay {
+
+    private String mapName;
+    private long seed;
+    private int lookRadius;
+
+    private List<GameCommand> actions;
+    private List<Integer> checksums;
+
+    private long replayDuration; // the time the most recent replay took, in nanoseconds
+
+    /**
+     * Constructor that reads a recorded game from its log file.
+     * @param path the path of the log file.
+     * @throws IOException If the file cannot be read or is not an action log.
+     */
+    public GameReplay(Path path) throws IOException {
+        actions = new ArrayList<GameCommand>();
+        checksums = new ArrayList<Integer>();
+
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+        try {
+            if (input.readInt() != ActionLog.MAGIC) {
+                throw new IOException(path + " is not an action log.");
+            }
+
+            int version = input.readInt();
+            if (version != ActionLog.VERSION && version != ActionLog.TEXT_VERSION) {
+                throw new IOException("Unsupported action log version " + version + ".");
+            }
+
+            mapName = input.readUTF();
+            seed = input.readLong();
+            lookRadius = input.readInt();
+
+            while (true) {
+                GameCommand action;
+                try {
+                    if (version == ActionLog.TEXT_VERSION) {
+                        action = GameCommand.decode(input.readUTF());
+                    } else {
+                        action = GameCommand.fromCode(input.readUnsignedByte());
+                    }
+                } catch (EOFException e) {
+                    break;
+                }
+
+                actions.add(action);
+                checksums.add(input.readInt());
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * @return The name of the map the game was played on.
+     */
+    public String getMapName() {
+        return mapName;
+    }
+
+    /**
+     * @return The seed of the recorded game.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The number of actions recorded.
+     */
+    public int getActionCount() {
+        return actions.size();
+    }
+
+    /**
+     * @return The time the most recent replay took, in nanoseconds.
+     */
+    public long getReplayDuration() {
+        return replayDuration;
+    }
+
+    /**
+     * Replays the recorded game, stopping at the first action whose result differs from the recording.
+     * @param terrain the terrain the game was played on.
+     * @return The index of the first action with a different result, or -1 if every result matched.
+     */
+    public int replay(Terrain terrain) {
+        if (!terrain.getName().equals(mapName)) {
+            throw new IllegalArgumentException("The game was played on " + mapName + ", not " + terrain.getName() + ".");
+        }
+
+        long start = System.nanoTime();
+
+        GameLogic game = new GameLogic(terrain, seed);
+        game.setLookRadius(lookRadius);
+        game.runGame();
+
+        int mismatch = -1;
+        for (int i = 0; i < actions.size(); i++) {
+            String result = game.processAction(actions.get(i));
+
+            if (ActionLog.checksum(result) != checksums.get(i)) {
+                mismatch = i;
+                break;
+            }
+        }
+
+        replayDuration = System.nanoTime() - start;
+
+        return mismatch;
+    }
+
+    /**
+     * Replays a game log, given as the first argument, and reports whether the results match the recording.
+     * The option -gcm gives the map file the game was played on, if it was not played on the default map.
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: GameReplay <ActionLog> [-gcm <MapFile>]");
+            System.exit(1);
+        }
+
+        try {
+            GameReplay replay = new GameReplay(Paths.get(args[0]));
+
+            Terrain terrain = Terrain.DEFAULT;
+            for (int i = 1; i < args.length - 1; i++) {
+                if (args[i].equals("-gcm")) {
+                    terrain = MapFile.load(Paths.get(args[i + 1]));
+                }
+            }
+
+            int mismatch = replay.replay(terrain);
+
+            int replayed = mismatch == -1 ? replay.getActionCount() : mismatch + 1;
+            double seconds = replay.getReplayDuration() / 1e9;
+            System.out.printf("Replayed %d actions of seed %d in %.3f ms (%.0f actions per second).%n",
+                    replayed, replay.getSeed(), seconds * 1000, replayed / seconds);
+
+            if (mismatch == -1) {
+                System.out.println("Every result matched the recording.");
+            } else {
+                System.out.println("Action " + mismatch + " (" + replay.actions.get(mismatch).getText() + ") gave a different result.");
+                System.exit(1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("The game could not be replayed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package chat.system.game.main;
+
+import java.util.HashMap;
+
+import chat.system.game.entity.BotPlayer;
+import chat.system.game.entity.HumanPlayer;
+import chat.system.game.entity.Player;
+import chat.system.game.entity.SpatialIndex;
+import chat.system.game.map.Map;
+
+/**
+ * The state and rules shared by every kind of game: the map, the positions of the players on it, and the commands
+ * a player can perform.
+ * <br></br>
+ * A world does not decide who its players are or when they act, that is left to the games extending it, i.e.
+ * {@link GameLogic} for a single player against a bot and {@link SharedWorld} for many players and bots.
+ */
+public abstract class GameWorld {
+
+    protected Map map;
+
+    protected SpatialIndex entities; // the positions of every player in the game
+
+    private boolean running;
+
+    protected ViewportRenderer renderer; // renders the views returned by LOOK, reused for every turn
+    private int lookRadius;
+
+    private HashMap<HumanPlayer, ViewDelta> subscriptions; // the players sent state updates after every turn
+
+    /**
+     * Constructor for a world on the given map with no players.
+     * @param map the map of the world.
+     */
+    protected GameWorld(Map map) {
+        running = false;
+
+        renderer = new ViewportRenderer();
+        lookRadius = ViewportRenderer.DEFAULT_RADIUS;
+
+        subscriptions = new HashMap<HumanPlayer, ViewDelta>();
+
+        this.map = map;
+
+        entities = new SpatialIndex(map.getNumberOfRows(), map.getNumberOfColumns());
+    }
+
+    /**
+     * @return Map object of the game.
+     */
+    public Map getGameMap() {
+        return map;
+    }
+
+    /**
+     * @return The seed of the random generator of the game.
+     */
+    public long getSeed() {
+        return map.getSeed();
+    }
+
+    /**
+     * @return The number of cells visible in each direction from the player when they LOOK.
+     */
+    public int getLookRadius() {
+        return lookRadius;
+    }
+
+    /**
+     * Sets the number of cells visible in each direction from the player when they LOOK.
+     * @param lookRadius the new view radius, must not be negative.
+     */
+    public void setLookRadius(int lookRadius) {
+        if (lookRadius < 0) {
+            throw new IllegalArgumentException("View radius must not be negative: " + lookRadius);
+        }
+
+        this.lookRadius = lookRadius;
+    }
+
+    /**
+     * @return If the game is running.
+     */
+    public boolean gameRunning() {
+        return running;
+    }
+
+    /**
+     * @return Gold required to win.
+     */
+    protected String hello() {
+        return String.valueOf(map.getGoldRequired());
+    }
+
+    /**
+     * @param player the player whose gold is counted.
+     * @return Gold currently owned.
+     */
+    protected String gold(HumanPlayer player) {
+        return String.valueOf(player.getGold());
+    }
+
+    /**
+     * Checks if movement is legal and updates player's location on the map.
+     * @param player the player object that will be moved, i.e. the human player or the bot
+     * @param direction the direction of the movement.
+     * @return a string that says the the move was either a success or it failed.
+     */
+    protected String move(Player player, char direction) {
+        int previousRow = player.getRow();
+        int previousColumn = player.getColumn();
+
+        if (player instanceof BotPlayer) {
+            ((BotPlayer) player).moveBot();
+        } else {
+            player.move(direction);
+        }
+
+        // if the move is unsuccessful, move the player back, cells outside the boundary
+        // of the map count as walls even if the map does not use a # character for them
+        if (map.isWall(player.getRow(), player.getColumn())) {
+            player.setRow(previousRow);
+            player.setColumn(previousColumn);
+
+            return "Fail";
+        } else {
+            return "Success";
+        }
+    }
+
+    /**
+     * Perform the PICKUP command, updating the map and the player's gold amount.
+     * @param player the player picking up the gold.
+     * @return If the player successfully picked-up gold.
+     */
+    protected String pickup(HumanPlayer player) {
+        // remove the gold from the map if there is gold at the players position
+        if (map.collectGold(player.getRow(), player.getColumn())) {
+            player.incrementGold();
+            return "Success. Gold owned:" + gold(player);
+        } else {
+            return "Fail. Gold owned: " + gold(player);
+        }
+    }
+
+    /**
+     * Converts the section of the map visible to the player into a single string.
+     * @param player the player that is using the method.
+     * @return A String representation of the game map.
+     */
+    protected String look(Player player) {
+        return look(player, lookRadius);
+    }
+
+    /**
+     * Converts the section of the map within the given radius of the player into a single string.
+     * @param player the player that is using the method.
+     * @param radius the number of cells visible in each direction from the player.
+     * @return A String representation of the game map.
+     */
+    public String look(Player player, int radius) {
+        return renderer.render(map, player.getRow(), player.getColumn(), radius, entities);
+    }
+
+    /**
+     * Subscribes the player to state updates, they are sent a full view of their surroundings after the next turn
+     * and only the changes to it after every turn from then on.
+     * @param player the player subscribing.
+     * @return The outcome of the subscription.
+     */
+    protected String subscribe(HumanPlayer player) {
+        if (subscriptions.containsKey(player)) {
+            return "Already subscribed";
+        }
+
+        subscriptions.put(player, new ViewDelta(lookRadius));
+        return "Subscribed";
+    }
+
+    /**
+     * Stops sending state updates to the player.
+     * @param player the player unsubscribing.
+     * @return The outcome of the request.
+     */
+    protected String unsubscribe(HumanPlayer player) {
+        if (subscriptions.remove(player) == null) {
+            return "Not subscribed";
+        }
+
+        return "Unsubscribed";
+    }
+
+    /**
+     * Encodes the changes to the view of a player since they were last sent an update.
+     * @param player the player the update is for.
+     * @param turn the number of the turn the update is for.
+     * @return The encoded update, or null if the player is not subscribed.
+     */
+    protected String getStateDelta(HumanPlayer player, long turn) {
+        ViewDelta delta = subscriptions.get(player);
+        if (delta == null) {
+            return null;
+        }
+
+        return delta.encode(turn, map, player, entities, renderer);
+    }
+
+    /**
+     * Checks the winning condition of the player.
+     * @param player the player trying to exit.
+     * @return String which says whether or not the player has won or lost.
+     */
+    protected String exit(HumanPlayer player) {
+        char characterUnderPlayer = map.getCharacter(player.getRow(), player.getColumn());
+        if (player.getGold() >= map.getGoldRequired() && characterUnderPlayer == 'E') {
+            return "WIN\nCongratulations you collected enough gold to escape the dungeon.";
+        } else {
+            return "LOSE";
+        }
+    }
+
+    /**
+     * Quits the game, shutting down the program.
+     * @param message the message displayed when the game quits.
+     */
+    protected void quitGame(String message) {
+        System.out.println("\n" + message + "\n");
+        System.exit(0);
+    }
+
+    /**
+     * Performs the action of a single player, without moving any bots.
+     * @param player the player performing the action.
+     * @param command the command the user entered.
+     * @return the outcome of the command, or "Invalid" if the command is INVALID.
+     */
+    protected String performAction(HumanPlayer player, GameCommand command) {
+        switch (command) {
+            case HELLO:
+                return "Gold to win: " + hello();
+
+            case GOLD:
+                return "Gold owned: " + gold(player);
+
+            case MOVE_NORTH:
+            case MOVE_EAST:
+            case MOVE_SOUTH:
+            case MOVE_WEST:
+                return move(player, command.getDirection());
+
+            case PICKUP:
+                return pickup(player);
+
+            case LOOK:
+                return "\n" + look(player);
+
+            case EXIT:
+                return exit(player);
+
+            case SUBSCRIBE:
+                return subscribe(player);
+
+            case UNSUBSCRIBE:
+                return unsubscribe(player);
+
+            default:
+                return "Invalid";
+        }
+    }
+
+    /**
+     * Performs the turn of a bot player.
+     * @param bot the bot taking its turn.
+     */
+    protected void botMove(BotPlayer bot) {
+        if (bot.getMapRequired()) {
+            bot.lookForPlayer();
+        } else {
+            move(bot, '0'); // '0' passed as direction as it is not required by the bot
+        }
+
+        bot.toggleMapRequired();
+    }
+
+    /**
+     * Runs the game.
+     */
+    public void runGame() {
+        running = true;
+    }
+
+}
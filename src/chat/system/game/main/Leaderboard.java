@@ -0,0 +1,302 @@
+package chat.system.game.main;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the totals of every player's finished games, sorted from the best score to the worst.
+ * <br></br>
+ * The scores are kept in a skip list, so the best players and the rank of a player can be read from any thread
+ * without locking while games are being recorded. If the leaderboard has a file, each game is appended to it on a
+ * background thread, and once enough games have been appended the file is rewritten with one total per player.
+ */
+public class Leaderboard {
+
+    private static final int MAGIC = 0x43534C42; // "CSLB"
+    private static final int VERSION = 1;
+
+    private static final byte GAME_RECORD = 1; // the result of a single game
+    private static final byte TOTAL_RECORD = 2; // the totals of a player, written when the file is compacted
+
+    private static final int COMPACTION_THRESHOLD = 1000; // games appended before the file is compacted
+
+    private ConcurrentHashMap<String, PlayerScore> scores; // the latest totals of each player, by name
+    private ConcurrentSkipListSet<PlayerScore> ranking; // the same totals, from best to worst
+
+    private Path file; // null if the leaderboard is not saved
+
+    // only used on the writer thread
+    private ExecutorService writer;
+    private DataOutputStream output;
+    private int appendedGames; // games appended since the file was last compacted
+
+    // the totals as they are in the file, which can be behind the totals in memory while games wait to be written
+    private HashMap<String, PlayerScore> savedScores;
+
+    /**
+     * Constructor for a leaderboard that is not saved.
+     */
+    public Leaderboard() {
+        scores = new ConcurrentHashMap<String, PlayerScore>();
+        ranking = new ConcurrentSkipListSet<PlayerScore>();
+    }
+
+    /**
+     * Constructor for a leaderboard saved in the given file, any scores already in the file are loaded.
+     * @param file the file the leaderboard is saved in, created if it does not exist.
+     * @throws IOException If the file cannot be read or written.
+     */
+    public Leaderboard(Path file) throws IOException {
+        this();
+        this.file = file;
+
+        load();
+        savedScores = new HashMap<String, PlayerScore>(scores);
+
+        // rewriting the file on start up also removes a record that was only partly written before a crash
+        compact();
+
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Leaderboard");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Adds a finished game to the totals of a player.
+     * @param name the name of the player.
+     * @param won true if the player won the game.
+     * @param gold the gold the player collected.
+     * @param turns the turns the game lasted.
+     * @param time the time the game took, in milliseconds.
+     */
+    public synchronized void recordGame(final String name, final boolean won, final int gold, final long turns,
+            final long time) {
+        addGame(name, won, gold, turns, time);
+
+        if (writer != null) {
+            writer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    append(name, won, gold, turns, time);
+                }
+            });
+        }
+    }
+
+    /**
+     * Updates the totals of a player in memory.
+     * @param name the name of the player.
+     * @param won true if the player won the game.
+     * @param gold the gold the player collected.
+     * @param turns the turns the game lasted.
+     * @param time the time the game took, in milliseconds.
+     */
+    private void addGame(String name, boolean won, int gold, long turns, long time) {
+        PlayerScore previous = scores.get(name);
+        if (previous == null) {
+            previous = new PlayerScore(name, 0, 0, 0, 0, 0);
+        }
+
+        replace(previous, previous.addGame(won, gold, turns, time));
+    }
+
+    /**
+     * Replaces the totals of a player. The new totals are added to the ranking before the old ones are removed,
+     * so a player is never missing from the ranking, although they may briefly appear twice.
+     * @param previous the previous totals of the player.
+     * @param score the new totals of the player.
+     */
+    private void replace(PlayerScore previous, PlayerScore score) {
+        scores.put(score.getName(), score);
+        ranking.add(score);
+        ranking.remove(previous);
+    }
+
+    /**
+     * @param count the number of players wanted.
+     * @return The totals of the players with the best scores, best first.
+     */
+    public List<PlayerScore> getTop(int count) {
+        List<PlayerScore> top = new ArrayList<PlayerScore>(count);
+
+        Iterator<PlayerScore> iterator = ranking.iterator();
+        while (iterator.hasNext() && top.size() < count) {
+            PlayerScore score = iterator.next();
+
+            // skip the old totals of a player that is being updated
+            if (scores.get(score.getName()) == score) {
+                top.add(score);
+            }
+        }
+
+        return top;
+    }
+
+    /**
+     * @param name the name of a player.
+     * @return The totals of the player, or null if they have not finished a game.
+     */
+    public PlayerScore getScore(String name) {
+        return scores.get(name);
+    }
+
+    /**
+     * @param name the name of a player.
+     * @return The position of the player on the leaderboard, starting from 1, or 0 if they have not finished a game.
+     */
+    public int getRank(String name) {
+        PlayerScore score = scores.get(name);
+        if (score == null) {
+            return 0;
+        }
+
+        return ranking.headSet(score).size() + 1;
+    }
+
+    /**
+     * @return The number of players on the leaderboard.
+     */
+    public int size() {
+        return scores.size();
+    }
+
+    /**
+     * Reads every record in the file into memory, stopping at the end of the file or at a partly written record.
+     * @throws IOException If the file cannot be read or is not a leaderboard.
+     */
+    private void load() throws IOException {
+        DataInputStream input;
+        try {
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)));
+        } catch (NoSuchFileException e) {
+            return;
+        }
+
+        try {
+            if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new IOException(file + " is not a leaderboard.");
+            }
+
+            while (true) {
+                byte type = input.readByte();
+                String name = input.readUTF();
+
+                if (type == GAME_RECORD) {
+                    boolean won = input.readBoolean();
+                    int gold = input.readInt();
+                    long turns = input.readLong();
+                    long time = input.readLong();
+
+                    addGame(name, won, gold, turns, time);
+                } else if (type == TOTAL_RECORD) {
+                    PlayerScore score = new PlayerScore(name, input.readInt(), input.readInt(), input.readLong(),
+                            input.readLong(), input.readLong());
+
+                    PlayerScore previous = scores.get(name);
+                    scores.put(name, score);
+                    ranking.add(score);
+                    if (previous != null) {
+                        ranking.remove(previous);
+                    }
+                } else {
+                    throw new IOException("Unknown leaderboard record " + type + ".");
+                }
+            }
+        } catch (EOFException e) {
+            // the end of the file, or a record that was not completely written
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Appends a game to the file, compacting the file once enough games have been appended.
+     * @param name the name of the player.
+     * @param won true if the player won the game.
+     * @param gold the gold the player collected.
+     * @param turns the turns the game lasted.
+     * @param time the time the game took, in milliseconds.
+     */
+    private void append(String name, boolean won, int gold, long turns, long time) {
+        try {
+            output.writeByte(GAME_RECORD);
+            output.writeUTF(name);
+            output.writeBoolean(won);
+            output.writeInt(gold);
+            output.writeLong(turns);
+            output.writeLong(time);
+            output.flush();
+
+            PlayerScore saved = savedScores.get(name);
+            if (saved == null) {
+                saved = new PlayerScore(name, 0, 0, 0, 0, 0);
+            }
+            savedScores.put(name, saved.addGame(won, gold, turns, time));
+
+            if (++appendedGames >= COMPACTION_THRESHOLD) {
+                compact();
+            }
+        } catch (IOException e) {
+            System.err.println("\nError: the leaderboard could not be saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the file with one total per player, replacing the records of each game, and reopens it for
+     * appending. The new file is written to a temporary file first, so a crash never loses the leaderboard.
+     * @throws IOException If the file cannot be written.
+     */
+    private void compact() throws IOException {
+        if (output != null) {
+            output.close();
+        }
+
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)));
+        try {
+            compacted.writeInt(MAGIC);
+            compacted.writeInt(VERSION);
+
+            for (PlayerScore score : savedScores.values()) {
+                compacted.writeByte(TOTAL_RECORD);
+                compacted.writeUTF(score.getName());
+                compacted.writeInt(score.getGames());
+                compacted.writeInt(score.getWins());
+                compacted.writeLong(score.getGold());
+                compacted.writeLong(score.getTurns());
+                compacted.writeLong(score.getTime());
+            }
+        } finally {
+            compacted.close();
+        }
+
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.APPEND)));
+        appendedGames = 0;
+    }
+
+}
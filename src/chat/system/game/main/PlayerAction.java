@@ -0,0 +1,52 @@
+package chat.system.game.main;
+
+/**
+ * An action submitted by a player in a {@link SharedWorld}, along with its result once it has been performed.
+ */
+public class PlayerAction {
+
+    private String playerName;
+    private String action;
+
+    private String result; // null until the action has been performed
+
+    /**
+     * Constructor for PlayerAction object.
+     * @param playerName the name of the player performing the action.
+     * @param action the command the player entered.
+     */
+    public PlayerAction(String playerName, String action) {
+        this.playerName = playerName;
+        this.action = action;
+    }
+
+    /**
+     * @return The name of the player performing the action.
+     */
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    /**
+     * @return The command the player entered.
+     */
+    public String getAction() {
+        return action;
+    }
+
+    /**
+     * @return The outcome of the action, or null if the action has not been performed yet.
+     */
+    public String getResult() {
+        return result;
+    }
+
+    /**
+     * Sets the outcome of the action.
+     * @param result the outcome of performing the action.
+     */
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+}
@@ -0,0 +1,130 @@
+package chat.system.game.main;
+
+/**
+ * The totals of every game a player has finished. PlayerScore objects never change, recording a game creates a new
+ * one, so they can be shared between threads and kept in sorted collections.
+ * <br></br>
+ * Scores are ordered from best to worst: highest score first, then fewest turns, then by name.
+ */
+public final class PlayerScore implements Comparable<PlayerScore> {
+
+    private static final int WIN_POINTS = 100;
+    private static final int GOLD_POINTS = 10;
+
+    private final String name;
+
+    private final int games;
+    private final int wins;
+    private final long gold; // the gold collected over every game
+    private final long turns; // the turns played over every game
+    private final long time; // the time spent playing every game, in milliseconds
+
+    /**
+     * Constructor for the totals of a player.
+     * @param name the name of the player.
+     * @param games the number of games finished.
+     * @param wins the number of games won.
+     * @param gold the gold collected over every game.
+     * @param turns the turns played over every game.
+     * @param time the time spent playing every game, in milliseconds.
+     */
+    public PlayerScore(String name, int games, int wins, long gold, long turns, long time) {
+        this.name = name;
+        this.games = games;
+        this.wins = wins;
+        this.gold = gold;
+        this.turns = turns;
+        this.time = time;
+    }
+
+    /**
+     * @param won true if the game was won.
+     * @param gameGold the gold collected in the game.
+     * @param gameTurns the turns played in the game.
+     * @param gameTime the time the game took, in milliseconds.
+     * @return The totals of the player including one more game.
+     */
+    public PlayerScore addGame(boolean won, int gameGold, long gameTurns, long gameTime) {
+        return new PlayerScore(name, games + 1, wins + (won ? 1 : 0), gold + gameGold, turns + gameTurns,
+                time + gameTime);
+    }
+
+    /**
+     * @return The name of the player.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The number of games finished.
+     */
+    public int getGames() {
+        return games;
+    }
+
+    /**
+     * @return The number of games won.
+     */
+    public int getWins() {
+        return wins;
+    }
+
+    /**
+     * @return The gold collected over every game.
+     */
+    public long getGold() {
+        return gold;
+    }
+
+    /**
+     * @return The turns played over every game.
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * @return The time spent playing every game, in milliseconds.
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return The points of the player, 100 for each win and 10 for each gold collected.
+     */
+    public long getScore() {
+        return wins * (long) WIN_POINTS + gold * GOLD_POINTS;
+    }
+
+    @Override
+    public int compareTo(PlayerScore other) {
+        int comparison = Long.compare(other.getScore(), getScore());
+        if (comparison == 0) {
+            comparison = Long.compare(turns, other.turns);
+        }
+        if (comparison == 0) {
+            comparison = name.compareTo(other.name);
+        }
+
+        return comparison;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof PlayerScore && compareTo((PlayerScore) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return name.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + getScore() + " points, " + wins + " wins in " + games + " games, " + gold + " gold, "
+                + turns + " turns, " + (time / 1000) + "s played";
+    }
+
+}
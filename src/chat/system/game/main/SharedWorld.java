@@ -0,0 +1,330 @@
+package chat.system.game.main;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import chat.system.game.entity.BotPlayer;
+import chat.system.game.entity.HumanPlayer;
+import chat.system.game.entity.Player;
+import chat.system.game.map.Map;
+import chat.system.game.map.Terrain;
+
+/**
+ * A game where many human players and bots share one map.
+ * <br></br>
+ * Instead of each action being performed as soon as it is entered, actions from any thread are queued and the world
+ * is advanced at a fixed rate. On every tick all queued actions are performed in the order they were submitted, each
+ * bot takes one turn, and the results of the tick are published to the {@link TickListener} all at once.
+ */
+public class SharedWorld extends GameWorld {
+
+    public static final String JOIN = "JOIN";
+    public static final String LEAVE = "LEAVE";
+
+    private static final int SPAWN_DISTANCE = 3; // how far from any bot new players are placed, where possible
+
+    // the human players in the world, by name, only changed by the tick thread but counted from any thread
+    private ConcurrentHashMap<String, HumanPlayer> players;
+    private List<BotPlayer> bots;
+
+    private ConcurrentLinkedQueue<PlayerAction> pendingActions; // actions waiting for the next tick
+
+    private List<Player> visiblePlayers; // the players found by the most recent search, reused by every search
+
+    private TickListener listener;
+
+    private long tickInterval; // the time between the start of each tick, in nanoseconds
+    private ScheduledExecutorService scheduler;
+
+    // tick metrics, only written by the tick thread
+    private volatile long tickCount;
+    private volatile long lastTickDuration;
+    private volatile long maxTickDuration;
+    private volatile long totalTickDuration;
+    private volatile long overrunCount;
+
+    /**
+     * Constructor for a shared world with no players or bots.
+     * @param terrain the terrain of the map.
+     * @param tickInterval the time between the start of each tick, in milliseconds.
+     * @param listener the listener the results of each tick are published to.
+     */
+    public SharedWorld(Terrain terrain, long tickInterval, TickListener listener) {
+        super(new Map(terrain));
+
+        this.tickInterval = TimeUnit.MILLISECONDS.toNanos(tickInterval);
+        this.listener = listener;
+
+        players = new ConcurrentHashMap<String, HumanPlayer>();
+        bots = new ArrayList<BotPlayer>();
+
+        pendingActions = new ConcurrentLinkedQueue<PlayerAction>();
+
+        visiblePlayers = new ArrayList<Player>();
+    }
+
+    /**
+     * Adds a bot to the world, this must be done before the world is started.
+     * @return The new bot.
+     */
+    public BotPlayer addBot() {
+        BotPlayer bot = new BotPlayer(map, null);
+        bots.add(bot);
+        entities.add(bot);
+
+        return bot;
+    }
+
+    /**
+     * Queues an action to be performed on the next tick. The actions JOIN and LEAVE add and remove the player from
+     * the world, any other action is a normal game command.
+     * @param playerName the name of the player.
+     * @param action the command the player entered.
+     */
+    public void submitAction(String playerName, String action) {
+        pendingActions.add(new PlayerAction(playerName, action));
+    }
+
+    /**
+     * Starts advancing the world at its fixed tick rate.
+     */
+    @Override
+    public void runGame() {
+        super.runGame();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    tick();
+                } catch (RuntimeException e) {
+                    // an exception would cancel every following tick, so report it and carry on
+                    e.printStackTrace();
+                }
+            }
+        }, tickInterval, tickInterval, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops advancing the world, any actions still queued are not performed.
+     */
+    public void stopGame() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    /**
+     * Advances the world by one step. This is normally called by the tick thread, but can be called directly to
+     * advance a world that has not been started.
+     */
+    public void tick() {
+        long start = System.nanoTime();
+
+        List<PlayerAction> results = new ArrayList<PlayerAction>();
+
+        PlayerAction playerAction;
+        while ((playerAction = pendingActions.poll()) != null) {
+            playerAction.setResult(perform(playerAction.getPlayerName(), playerAction.getAction()));
+            results.add(playerAction);
+        }
+
+        for (BotPlayer bot : bots) {
+            if (bot.getMapRequired()) {
+                bot.setTarget(findNearestVisiblePlayer(bot));
+            }
+
+            botMove(bot);
+        }
+
+        // remove any players that a bot has caught
+        Iterator<java.util.Map.Entry<String, HumanPlayer>> iterator = players.entrySet().iterator();
+        while (iterator.hasNext()) {
+            java.util.Map.Entry<String, HumanPlayer> entry = iterator.next();
+            HumanPlayer player = entry.getValue();
+            if (isCaught(player)) {
+                PlayerAction caught = new PlayerAction(entry.getKey(), "CAUGHT");
+                caught.setResult("You were caught by the bot, you lose.");
+                results.add(caught);
+
+                iterator.remove();
+                removeEntity(player);
+            }
+        }
+
+        long tick = ++tickCount;
+
+        // send the subscribed players the changes to their view
+        for (java.util.Map.Entry<String, HumanPlayer> entry : players.entrySet()) {
+            String delta = getStateDelta(entry.getValue(), tick);
+            if (delta != null) {
+                PlayerAction update = new PlayerAction(entry.getKey(), "DELTA");
+                update.setResult(delta);
+                results.add(update);
+            }
+        }
+
+        if (listener != null) {
+            listener.tickCompleted(tick, results);
+        }
+
+        recordTickDuration(System.nanoTime() - start);
+    }
+
+    /**
+     * Performs a single action for the named player.
+     * @param playerName the name of the player.
+     * @param action the command the player entered.
+     * @return The outcome of the action.
+     */
+    private String perform(String playerName, String action) {
+        HumanPlayer player = players.get(playerName);
+
+        if (action.equals(JOIN)) {
+            if (player != null) {
+                return "Already playing";
+            }
+
+            player = new HumanPlayer(map);
+            player.initialisePlayerPosition(SPAWN_DISTANCE, bots.toArray(new BotPlayer[bots.size()]));
+            players.put(playerName, player);
+            entities.add(player);
+
+            return "Player " + playerName + " has been spawned.";
+        } else if (player == null) {
+            return "Not playing";
+        } else if (action.equals(LEAVE)) {
+            players.remove(playerName);
+            removeEntity(player);
+
+            return "Player " + playerName + " has exited.";
+        }
+
+        String result = performAction(player, GameCommand.decode(action));
+        if (result.startsWith("WIN")) {
+            // the player has escaped the dungeon so they leave the world
+            players.remove(playerName);
+            removeEntity(player);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param bot the bot looking for a player.
+     * @return The closest human player the bot can see, or null if it cannot see any.
+     */
+    private HumanPlayer findNearestVisiblePlayer(BotPlayer bot) {
+        HumanPlayer nearest = null;
+        int nearestDistance = Integer.MAX_VALUE;
+
+        int radius = bot.getViewRadius();
+        visiblePlayers.clear();
+        entities.findInRectangle(bot.getRow() - radius, bot.getColumn() - radius, bot.getRow() + radius,
+                bot.getColumn() + radius, visiblePlayers);
+
+        for (int k = 0; k < visiblePlayers.size(); k++) {
+            Player player = visiblePlayers.get(k);
+            if (player instanceof HumanPlayer && bot.canSee(player)) {
+                int distance = Math.abs(player.getRow() - bot.getRow()) + Math.abs(player.getColumn() - bot.getColumn());
+                if (distance < nearestDistance) {
+                    nearest = (HumanPlayer) player;
+                    nearestDistance = distance;
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * @param player a human player in the world.
+     * @return True if a bot is on the same cell as the player.
+     */
+    private boolean isCaught(HumanPlayer player) {
+        return entities.getAt(player.getRow(), player.getColumn(), BotPlayer.class) != null;
+    }
+
+    /**
+     * Removes a player from the list of players that are drawn and from the targets of the bots.
+     * @param player the player leaving the world, they are also unsubscribed from state updates.
+     */
+    private void removeEntity(HumanPlayer player) {
+        entities.remove(player);
+        unsubscribe(player);
+
+        for (BotPlayer bot : bots) {
+            if (bot.getTarget() == player) {
+                bot.setTarget(null);
+            }
+        }
+    }
+
+    /**
+     * Updates the tick metrics with the duration of the tick that has just finished.
+     * @param duration the time the tick took, in nanoseconds.
+     */
+    private void recordTickDuration(long duration) {
+        lastTickDuration = duration;
+        totalTickDuration += duration;
+
+        if (duration > maxTickDuration) {
+            maxTickDuration = duration;
+        }
+
+        if (duration > tickInterval) {
+            overrunCount++;
+        }
+    }
+
+    /**
+     * @return The number of human players currently in the world.
+     */
+    public int getPlayerCount() {
+        return players.size();
+    }
+
+    /**
+     * @return The number of ticks performed so far.
+     */
+    public long getTickCount() {
+        return tickCount;
+    }
+
+    /**
+     * @return The time the most recent tick took, in nanoseconds.
+     */
+    public long getLastTickDuration() {
+        return lastTickDuration;
+    }
+
+    /**
+     * @return The longest time any tick has taken, in nanoseconds.
+     */
+    public long getMaxTickDuration() {
+        return maxTickDuration;
+    }
+
+    /**
+     * @return The mean time taken by a tick, in nanoseconds.
+     */
+    public long getAverageTickDuration() {
+        long ticks = tickCount;
+        return ticks == 0 ? 0 : totalTickDuration / ticks;
+    }
+
+    /**
+     * @return The number of ticks that took longer than the tick interval.
+     */
+    public long getOverrunCount() {
+        return overrunCount;
+    }
+
+}
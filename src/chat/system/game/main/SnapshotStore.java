@@ -0,0 +1,146 @@
+package chat.system.game.main;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Keeps the latest snapshot of each player's game in a directory, one file per player, so a player can carry on
+ * their game after disconnecting or after the game client restarts.
+ * <br></br>
+ * Snapshots are written on a background thread so saving never delays a turn. If a player's game is saved again
+ * before the previous snapshot has been written, only the newest snapshot is written.
+ */
+public class SnapshotStore {
+
+    private Path directory;
+
+    // the snapshot waiting to be written for each player, removed once it has been written
+    private ConcurrentHashMap<String, byte[]> pending;
+
+    private ExecutorService writer;
+
+    /**
+     * Constructor for a store that keeps its snapshots in the given directory.
+     * @param directory the directory the snapshots are written to, created if it does not exist.
+     * @throws IOException If the directory cannot be created.
+     */
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+
+        pending = new ConcurrentHashMap<String, byte[]>();
+
+        writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SnapshotStore");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Saves the snapshot of a player's game without waiting for it to be written.
+     * @param playerName the name of the player.
+     * @param snapshot the snapshot of their game.
+     */
+    public void save(final String playerName, byte[] snapshot) {
+        // if a snapshot is already waiting, the queued write will pick up this newer one instead
+        if (pending.put(playerName, snapshot) != null) {
+            return;
+        }
+
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(playerName);
+            }
+        });
+    }
+
+    /**
+     * Writes the waiting snapshot of a player to a temporary file and then moves it over the previous snapshot,
+     * so a snapshot file is never left half written.
+     * @param playerName the name of the player.
+     */
+    private void write(String playerName) {
+        byte[] snapshot = pending.remove(playerName);
+        if (snapshot == null) {
+            return; // deleted before it could be written
+        }
+
+        Path path = getPath(playerName);
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try {
+            Files.write(temporaryPath, snapshot);
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            System.err.println("\nError: the game of " + playerName + " could not be saved: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads the latest snapshot of a player's game, including one that has not been written yet.
+     * @param playerName the name of the player.
+     * @return The snapshot, or null if the player has no saved game.
+     * @throws IOException If the snapshot file cannot be read.
+     */
+    public byte[] load(String playerName) throws IOException {
+        byte[] snapshot = pending.get(playerName);
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        try {
+            return Files.readAllBytes(getPath(playerName));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Deletes the saved game of a player, once it has finished.
+     * @param playerName the name of the player.
+     */
+    public void delete(final String playerName) {
+        pending.remove(playerName);
+
+        // deleted on the writer thread, after any write of the player's game that has already started
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Files.deleteIfExists(getPath(playerName));
+                } catch (IOException e) {
+                    System.err.println("\nError: the game of " + playerName + " could not be deleted: " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * @param playerName the name of a player.
+     * @return The path of the player's snapshot file, the name is encoded so any player name gives a valid file name.
+     */
+    private Path getPath(String playerName) {
+        StringBuilder fileName = new StringBuilder();
+        for (char character : playerName.toCharArray()) {
+            if (Character.isLetterOrDigit(character)) {
+                fileName.append(character);
+            } else {
+                fileName.append('_').append(Integer.toHexString(character));
+            }
+        }
+
+        return directory.resolve(fileName.append(".snapshot").toString());
+    }
+
+}
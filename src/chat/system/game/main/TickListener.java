@@ -0,0 +1,18 @@
+package chat.system.game.main;
+
+import java.util.List;
+
+/**
+ * Receives the results of each tick of a {@link SharedWorld}.
+ */
+public interface TickListener {
+
+    /**
+     * Called on the tick thread once every action of a tick has been performed.
+     * @param tick the number of the tick, starting from 1.
+     * @param results the actions performed during the tick with their results, including any results produced by
+     * the world itself, such as a player being caught by a bot.
+     */
+    void tickCompleted(long tick, List<PlayerAction> results);
+
+}
@@ -0,0 +1,121 @@
+package chat.system.game.main;
+
+import chat.system.game.entity.HumanPlayer;
+import chat.system.game.entity.SpatialIndex;
+import chat.system.game.map.Map;
+
+/**
+ * Encodes the changes to the view of a subscribed player since the last update they were sent.
+ * <br></br>
+ * The first update is a full view, all later updates contain only the cells that have changed. Updates are single
+ * lines of text so they can be sent through the chat like any other game message:
+ * <ul>
+ * <li>{@code BASE <turn> <radius> <top> <left> <gold> <cells>} gives the whole view, where top and left are the map
+ * position of the top left cell and cells is one character per cell in row order.</li>
+ * <li>{@code DELTA <turn> <top> <left> [G<gold>] <changes>} gives the new position of the view, the gold owned if it
+ * has changed, and each cell that differs from the previous view, or was not in it, as the index of the cell in the
+ * view followed by its character, e.g. {@code 7P12.}. The cell characters are never digits.</li>
+ * </ul>
+ */
+public class ViewDelta {
+
+    private int radius;
+    private int size; // the number of cells along each side of the view
+
+    private char[] previous; // the cells of the view last sent to the player
+    private char[] current; // the cells of the view being encoded, swapped with previous once encoded
+
+    // the map position of the top left cell of the view last sent to the player
+    private int previousTop;
+    private int previousLeft;
+
+    private int previousGold;
+
+    private boolean baseSent;
+
+    private StringBuilder encoded; // reused for every update
+
+    /**
+     * Constructor for ViewDelta object.
+     * @param radius the number of cells visible in each direction from the player.
+     */
+    public ViewDelta(int radius) {
+        this.radius = radius;
+
+        size = ViewportRenderer.getViewSize(radius);
+        previous = new char[size * size];
+        current = new char[size * size];
+
+        baseSent = false;
+
+        encoded = new StringBuilder();
+    }
+
+    /**
+     * Renders the current view of the player and encodes the changes since the last update.
+     * @param turn the number of the turn or tick the update is for.
+     * @param map the map of the game.
+     * @param player the subscribed player.
+     * @param entities the index of the players in the game.
+     * @param renderer the renderer of the game.
+     * @return The encoded update.
+     */
+    public String encode(long turn, Map map, HumanPlayer player, SpatialIndex entities, ViewportRenderer renderer) {
+        renderer.renderCells(map, player.getRow(), player.getColumn(), radius, entities, current);
+
+        int top = player.getRow() - radius;
+        int left = player.getColumn() - radius;
+        int gold = player.getGold();
+
+        encoded.setLength(0);
+
+        if (!baseSent) {
+            encoded.append("BASE ").append(turn).append(' ').append(radius).append(' ').append(top).append(' ')
+                    .append(left).append(' ').append(gold).append(' ').append(current);
+
+            baseSent = true;
+        } else {
+            encoded.append("DELTA ").append(turn).append(' ').append(top).append(' ').append(left);
+
+            if (gold != previousGold) {
+                encoded.append(" G").append(gold);
+            }
+
+            int changesStart = encoded.length();
+            encoded.append(' ');
+
+            for (int i = 0; i < size; i++) {
+                // the row of the previous view that shows the same map row as row i of the current view
+                int previousRow = top + i - previousTop;
+
+                for (int j = 0; j < size; j++) {
+                    int previousColumn = left + j - previousLeft;
+                    char cell = current[i * size + j];
+
+                    boolean wasVisible = previousRow >= 0 && previousRow < size
+                            && previousColumn >= 0 && previousColumn < size;
+
+                    if (!wasVisible || previous[previousRow * size + previousColumn] != cell) {
+                        encoded.append(i * size + j).append(cell);
+                    }
+                }
+            }
+
+            // leave no trailing space if nothing changed
+            if (encoded.length() == changesStart + 1) {
+                encoded.setLength(changesStart);
+            }
+        }
+
+        char[] swap = previous;
+        previous = current;
+        current = swap;
+
+        previousTop = top;
+        previousLeft = left;
+        previousGold = gold;
+
+        return encoded.toString();
+    }
+
+}
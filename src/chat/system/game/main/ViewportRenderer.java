@@ -0,0 +1,142 @@
+package chat.system.game.main;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import chat.system.game.entity.BotPlayer;
+import chat.system.game.entity.Player;
+import chat.system.game.entity.SpatialIndex;
+import chat.system.game.map.Map;
+
+/**
+ * Renders the square section of the map surrounding a position into a reusable character buffer.
+ * <br></br>
+ * Each game session owns one renderer so repeated LOOK commands, and views of any radius, reuse the same
+ * buffer instead of building a new string for every cell.
+ */
+public class ViewportRenderer {
+
+    public static final int DEFAULT_RADIUS = 2; // a radius of 2 gives the original 5x5 view
+
+    private char[] buffer; // the rendered rows of the view, including the new line characters
+
+    private List<Player> visiblePlayers; // the players found inside the view, reused for every view
+
+    /**
+     * Default constructor, allocates a buffer large enough for a view of the default radius.
+     */
+    public ViewportRenderer() {
+        buffer = new char[getRenderedLength(DEFAULT_RADIUS)];
+        visiblePlayers = new ArrayList<Player>();
+    }
+
+    /**
+     * @param radius the number of cells visible in each direction from the centre of the view.
+     * @return The number of cells along each side of a view with the given radius.
+     */
+    public static int getViewSize(int radius) {
+        return 2 * radius + 1;
+    }
+
+    /**
+     * @param radius the number of cells visible in each direction from the centre of the view.
+     * @return The number of characters in a rendered view, i.e. every cell plus a new line for each row.
+     */
+    private static int getRenderedLength(int radius) {
+        int size = getViewSize(radius);
+        return size * (size + 1);
+    }
+
+    /**
+     * Renders the view centred on the given position as a string of rows, each terminated by a new line.
+     * @param map the map being viewed.
+     * @param centreRow the row at the centre of the view.
+     * @param centreColumn the column at the centre of the view.
+     * @param radius the number of cells visible in each direction from the centre.
+     * @param entities the index of the players in the game, human players are drawn as a P and bots as a B if
+     * inside the view, with human players drawn over bots on the same cell.
+     * @return A String representation of the view.
+     */
+    public String render(Map map, int centreRow, int centreColumn, int radius, SpatialIndex entities) {
+        int length = getRenderedLength(radius);
+        if (buffer.length < length) {
+            buffer = new char[length];
+        }
+
+        draw(map, centreRow, centreColumn, radius, entities, buffer, true);
+
+        return new String(buffer, 0, length);
+    }
+
+    /**
+     * Renders the view centred on the given position into the given array, one character per cell in row order
+     * with no new lines.
+     * @param map the map being viewed.
+     * @param centreRow the row at the centre of the view.
+     * @param centreColumn the column at the centre of the view.
+     * @param radius the number of cells visible in each direction from the centre.
+     * @param entities the index of the players in the game.
+     * @param cells the array the view is written to, with room for at least one character per cell.
+     */
+    public void renderCells(Map map, int centreRow, int centreColumn, int radius, SpatialIndex entities,
+            char[] cells) {
+        draw(map, centreRow, centreColumn, radius, entities, cells, false);
+    }
+
+    /**
+     * Writes the characters of the view centred on the given position into the given array.
+     * @param map the map being viewed.
+     * @param centreRow the row at the centre of the view.
+     * @param centreColumn the column at the centre of the view.
+     * @param radius the number of cells visible in each direction from the centre.
+     * @param entities the index of the players in the game.
+     * @param target the array the view is written to.
+     * @param newLines if true, each row is followed by a new line character.
+     */
+    private void draw(Map map, int centreRow, int centreColumn, int radius, SpatialIndex entities, char[] target,
+            boolean newLines) {
+        int size = getViewSize(radius);
+        int stride = newLines ? size + 1 : size; // the number of characters used by each row
+        int rows = map.getNumberOfRows();
+
+        int index = 0;
+        for (int i = centreRow - radius; i <= centreRow + radius; i++) {
+            // rows outside the map are rendered entirely as walls
+            if (i < 0 || i >= rows) {
+                for (int k = 0; k < size; k++) {
+                    target[index++] = '#';
+                }
+            } else {
+                // any visible areas outside the map are displayed as a #
+                for (int j = centreColumn - radius; j <= centreColumn + radius; j++) {
+                    target[index++] = map.getCharacter(i, j);
+                }
+            }
+
+            if (newLines) {
+                target[index++] = '\n';
+            }
+        }
+
+        // draw the players inside the view over the map
+        visiblePlayers.clear();
+        entities.findInRectangle(centreRow - radius, centreColumn - radius, centreRow + radius, centreColumn + radius,
+                visiblePlayers);
+
+        for (int k = 0; k < visiblePlayers.size(); k++) {
+            Player entity = visiblePlayers.get(k);
+            int viewRow = entity.getRow() - centreRow + radius;
+            int viewColumn = entity.getColumn() - centreColumn + radius;
+
+            int cell = viewRow * stride + viewColumn;
+            if (entity instanceof BotPlayer) {
+                if (target[cell] != 'P') {
+                    target[cell] = 'B';
+                }
+            } else {
+                target[cell] = 'P';
+            }
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package chat.system.game.map;
+
+import java.util.Arrays;
+
+/**
+ * Stores the walking distance to a single target cell from every cell within a square area around the target.
+ * <br></br>
+ * The field is built with a breadth first search over the cells that are not walls, and is only rebuilt when
+ * it is asked for distances to a different target, so any number of bots chasing the same target share the
+ * cost of one search per target move. Only paths that stay inside the area are searched, so the cost of a
+ * rebuild and the memory used depend on the radius of the area and not on the size of the map.
+ */
+public class DistanceField {
+
+    public static final int UNREACHABLE = -1;
+
+    private Map map;
+
+    private int radius; // the number of cells the area extends in each direction from the target
+    private int size; // the number of cells along each side of the area
+
+    private int[] distances; // distance of each cell in the area, indexed by areaRow * size + areaColumn
+    private int[] queue; // cells waiting to be visited during the search, reused by every rebuild
+
+    // the cell the distances are currently measured to
+    private int targetRow;
+    private int targetColumn;
+
+    /**
+     * Constructor for DistanceField object, no distances are calculated until a target is given.
+     * @param map the map the distances are measured over.
+     * @param radius the number of cells the searched area extends in each direction from the target.
+     */
+    public DistanceField(Map map, int radius) {
+        this.map = map;
+        this.radius = radius;
+
+        size = 2 * radius + 1;
+        distances = new int[size * size];
+        queue = new int[size * size];
+
+        targetRow = -1;
+        targetColumn = -1;
+        Arrays.fill(distances, UNREACHABLE);
+    }
+
+    /**
+     * Makes sure the distances are measured to the given target, rebuilding the field only if the target
+     * has changed since the last call.
+     * @param row the row of the target.
+     * @param column the column of the target.
+     */
+    public void update(int row, int column) {
+        if (row == targetRow && column == targetColumn) {
+            return;
+        }
+
+        targetRow = row;
+        targetColumn = column;
+
+        Arrays.fill(distances, UNREACHABLE);
+        if (map.isWall(row, column)) {
+            return;
+        }
+
+        int head = 0;
+        int tail = 0;
+        int start = radius * size + radius;
+        distances[start] = 0;
+        queue[tail++] = start;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int areaRow = cell / size;
+            int areaColumn = cell - areaRow * size;
+            int nextDistance = distances[cell] + 1;
+
+            // visit the neighbours to the north, south, west and east of the cell
+            if (areaRow > 0) {
+                tail = visit(areaRow - 1, areaColumn, nextDistance, tail);
+            }
+            if (areaRow < size - 1) {
+                tail = visit(areaRow + 1, areaColumn, nextDistance, tail);
+            }
+            if (areaColumn > 0) {
+                tail = visit(areaRow, areaColumn - 1, nextDistance, tail);
+            }
+            if (areaColumn < size - 1) {
+                tail = visit(areaRow, areaColumn + 1, nextDistance, tail);
+            }
+        }
+    }
+
+    /**
+     * Records the distance of a neighbouring cell and queues it if it has not been reached yet.
+     * @param areaRow the row of the neighbouring cell within the area.
+     * @param areaColumn the column of the neighbouring cell within the area.
+     * @param distance the distance of the neighbouring cell from the target.
+     * @param tail the current end of the queue.
+     * @return The new end of the queue.
+     */
+    private int visit(int areaRow, int areaColumn, int distance, int tail) {
+        int cell = areaRow * size + areaColumn;
+
+        if (distances[cell] == UNREACHABLE
+                && !map.isWall(targetRow - radius + areaRow, targetColumn - radius + areaColumn)) {
+            distances[cell] = distance;
+            queue[tail++] = cell;
+        }
+
+        return tail;
+    }
+
+    /**
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return The number of moves needed to walk from the cell to the target, or UNREACHABLE if there is no
+     * path inside the searched area or the cell is outside it.
+     */
+    public int getDistance(int row, int column) {
+        int areaRow = row - targetRow + radius;
+        int areaColumn = column - targetColumn + radius;
+
+        if (areaRow < 0 || areaRow >= size || areaColumn < 0 || areaColumn >= size) {
+            return UNREACHABLE;
+        }
+
+        return distances[areaRow * size + areaColumn];
+    }
+
+}
@@ -0,0 +1,58 @@
+package chat.system.game.map;
+
+import java.util.Random;
+
+/**
+ * The random generator of a single game. It gives exactly the same numbers as {@link Random} for the same seed,
+ * but its internal state can be read and restored, so a saved game carries on with the same random choices it
+ * would have made had it never been saved.
+ * <br></br>
+ * Unlike Random, it is not safe to share between threads, as every game is only played on one thread at a time.
+ */
+public class GameRandom extends Random {
+
+    private static final long serialVersionUID = 1L;
+
+    // the constants of the linear congruential generator used by Random
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state; // set by setSeed, which Random calls from its constructor
+
+    /**
+     * Constructor for a generator with the given seed.
+     * @param seed the seed of the generator.
+     */
+    public GameRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return The internal state of the generator, which determines every number it gives from now on.
+     */
+    public long getState() {
+        return state;
+    }
+
+    /**
+     * Restores the generator to a state previously returned by {@link #getState()}.
+     * @param state the state to restore.
+     */
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+}
@@ -1,77 +1,338 @@
-package chat.system.game.map;
-
-/**
- * Reads and contains in memory the map of the game.
- */
-public class Map {
-
-    private char[][] map;
-
-    private String mapName;
-
-    private int goldRequired;
-
-    /**
-     * Default constructor, creates the default map "Chat System Map".
-     */
-    public Map() {
-        mapName = "Chat System Map";
-        goldRequired = 2;
-        map = new char[][] {
-                {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
-                {'#', 'E', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '#'},
-                {'#', '#', '#', '#', '.', '.', '#', 'G', '#', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '#'},
-                {'#', '.', '.', '#', '.', '.', '#', '#', '#', '.', '.', '#', '#', '#', '.', '.', '.', '.', '.', '#'},
-                {'#', '.', '.', '.', '.', '.', '.', '#', '#', '.', '.', '#', '#', '#', '.', '#', '#', '#', '.', '#'},
-                {'#', '.', '.', '#', '#', '#', '.', '.', '#', '.', '.', '#', 'G', '#', '.', '.', '.', '#', '.', '#'},
-                {'#', '.', '.', '.', 'G', '#', '.', '.', '.', '.', '.', '#', '.', '#', '#', '#', '.', '#', '.', '#'},
-                {'#', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '#', 'E', '#'},
-                {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#','#' }};
-    }
-
-    /**
-     * @return Gold required to exit the current map.
-     */
-    public int getGoldRequired() {
-        return goldRequired;
-    }
-
-    /**
-     * @return The map as stored in memory.
-     */
-    public char[][] getMap() {
-        return map;
-    }
-
-    /**
-     * @return The name of the current map.
-     */
-    public String getMapName() {
-        return mapName;
-    }
-
-    /**
-     * @return The number of rows in the map.
-     */
-    public int getNumberOfRows() {
-        return getMap().length;
-    }
-
-    /**
-     * @return The number of columns in the map.
-     */
-    public int getNumberOfColumns() {
-        return getMap()[0].length;
-    }
-
-    /**
-     * Changes the character at given position to the new character provided.
-     * @param row the row of the character to be changed.
-     * @param column the column of the character to be changed.
-     * @param newCharacter the new character the old character is to be replaced with.
-     */
-    public void changeCharacter(int row, int column, char newCharacter) {
-        map[row][column] = newCharacter;
-    }
-
-}
+package chat.system.game.map;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Contains the map of a single game, i.e. the shared {@link Terrain} the game is played on and the changes
+ * made to it during the game.
+ */
+public class Map {
+
+    private static final int SPAWN_ATTEMPTS_PER_CHUNK = 8; // chunks picked per chunk of the map before giving up
+
+    private Terrain terrain;
+
+    private BitSet collectedGold; // one bit per gold in the terrain, set once the gold has been picked up
+
+    // cells that players can be placed on in this game but not at the start of it, i.e. where gold was collected
+    private int[] freedCells;
+    private int freedCellCount;
+
+    // the same cells by the chunk of the terrain they are in, so the free cells of a chunk are found directly
+    private int[][] chunkFreedCells;
+    private int[] chunkFreedCellCounts;
+
+    // every random choice made in the game comes from this generator, so a game can be repeated from its seed
+    private long seed;
+    private GameRandom random;
+
+    /**
+     * Default constructor, creates the default map "Chat System Map".
+     */
+    public Map() {
+        this(Terrain.DEFAULT);
+    }
+
+    /**
+     * Constructor for a map played on the given terrain.
+     * @param terrain the terrain of the map, shared with any other games played on it.
+     */
+    public Map(Terrain terrain) {
+        this(terrain, System.nanoTime());
+    }
+
+    /**
+     * Constructor for a map played on the given terrain, whose random choices are made from the given seed.
+     * @param terrain the terrain of the map, shared with any other games played on it.
+     * @param seed the seed of the random generator of the game.
+     */
+    public Map(Terrain terrain, long seed) {
+        this.terrain = terrain;
+
+        this.seed = seed;
+        random = new GameRandom(seed);
+
+        collectedGold = new BitSet(terrain.getGoldCount());
+
+        freedCells = new int[0];
+        freedCellCount = 0;
+
+        chunkFreedCells = new int[terrain.getChunkCount()][];
+        chunkFreedCellCounts = new int[terrain.getChunkCount()];
+    }
+
+    /**
+     * @return The terrain the map is played on.
+     */
+    public Terrain getTerrain() {
+        return terrain;
+    }
+
+    /**
+     * @return The seed of the random generator of the game.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return The random generator every player in the game makes its random choices with.
+     */
+    public Random getRandom() {
+        return random;
+    }
+
+    /**
+     * @return Gold required to exit the current map.
+     */
+    public int getGoldRequired() {
+        return terrain.getGoldRequired();
+    }
+
+    /**
+     * @return The name of the current map.
+     */
+    public String getMapName() {
+        return terrain.getName();
+    }
+
+    /**
+     * @return The number of rows in the map.
+     */
+    public int getNumberOfRows() {
+        return terrain.getNumberOfRows();
+    }
+
+    /**
+     * @return The number of columns in the map.
+     */
+    public int getNumberOfColumns() {
+        return terrain.getNumberOfColumns();
+    }
+
+    /**
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return The current character of the cell, or a # if the cell is outside the map.
+     */
+    public char getCharacter(int row, int column) {
+        if (!terrain.contains(row, column)) {
+            return '#';
+        }
+
+        char tile = terrain.getTile(row, column);
+        if (tile == 'G' && collectedGold.get(terrain.getGoldIndex(row, column))) {
+            return '.';
+        }
+
+        return tile;
+    }
+
+    /**
+     * Checks if a cell cannot be walked on or seen through.
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return True if the cell is a wall or is outside the map.
+     */
+    public boolean isWall(int row, int column) {
+        return terrain.isWall(row, column);
+    }
+
+    /**
+     * Removes the gold at the given position from the map.
+     * @param row the row of the gold.
+     * @param column the column of the gold.
+     * @return True if there was gold at the position, false if there was no gold or it was already collected.
+     */
+    public boolean collectGold(int row, int column) {
+        int goldIndex = terrain.getGoldIndex(row, column);
+        if (goldIndex < 0 || collectedGold.get(goldIndex)) {
+            return false;
+        }
+
+        collectedGold.set(goldIndex);
+
+        // the cell no longer contains gold, so players can now be placed on it
+        if (freedCellCount == freedCells.length) {
+            freedCells = Arrays.copyOf(freedCells, Math.max(4, freedCellCount * 2));
+        }
+        freedCells[freedCellCount++] = row * getNumberOfColumns() + column;
+        addChunkFreedCell(row * getNumberOfColumns() + column);
+
+        return true;
+    }
+
+    /**
+     * @return The number of bytes written by {@link #writeState(ByteBuffer)}.
+     */
+    public int getStateSize() {
+        int goldWords = (collectedGold.length() + 63) / 64;
+        return 8 + 4 + goldWords * 8 + 4 + freedCellCount * 4;
+    }
+
+    /**
+     * Writes the changes made to the map during the game, and the state of its random generator, to a buffer.
+     * @param buffer the buffer written to, with at least {@link #getStateSize()} bytes remaining.
+     */
+    public void writeState(ByteBuffer buffer) {
+        buffer.putLong(random.getState());
+
+        long[] goldWords = collectedGold.toLongArray();
+        buffer.putInt(goldWords.length);
+        for (long word : goldWords) {
+            buffer.putLong(word);
+        }
+
+        buffer.putInt(freedCellCount);
+        for (int i = 0; i < freedCellCount; i++) {
+            buffer.putInt(freedCells[i]);
+        }
+    }
+
+    /**
+     * Restores the changes made to the map during a game, as written by {@link #writeState(ByteBuffer)}. The state
+     * is only applied once all of it has been read and checked against the terrain.
+     * @param buffer the buffer read from.
+     * @throws IllegalArgumentException If the state is not of a game on this terrain.
+     * @throws java.nio.BufferUnderflowException If the buffer ends before the state does.
+     */
+    public void readState(ByteBuffer buffer) {
+        long randomState = buffer.getLong();
+
+        int goldCount = terrain.getGoldCount();
+
+        int goldWordCount = buffer.getInt();
+        if (goldWordCount < 0 || goldWordCount > (goldCount + 63) / 64 || goldWordCount > buffer.remaining() / 8) {
+            throw new IllegalArgumentException("The saved map has an invalid amount of gold collected.");
+        }
+
+        long[] goldWords = new long[goldWordCount];
+        for (int i = 0; i < goldWords.length; i++) {
+            goldWords[i] = buffer.getLong();
+        }
+        BitSet savedGold = BitSet.valueOf(goldWords);
+        if (savedGold.length() > goldCount) {
+            throw new IllegalArgumentException("The saved map has collected gold the terrain does not have.");
+        }
+
+        int savedCellCount = buffer.getInt();
+        if (savedCellCount < 0 || savedCellCount > goldCount || savedCellCount > buffer.remaining() / 4) {
+            throw new IllegalArgumentException("The saved map has an invalid number of freed cells.");
+        }
+
+        // a cell is only freed when its gold is collected
+        int columns = getNumberOfColumns();
+        int[] savedCells = new int[Math.max(4, savedCellCount)];
+        for (int i = 0; i < savedCellCount; i++) {
+            int cell = buffer.getInt();
+            int goldIndex = cell < 0 ? -1 : terrain.getGoldIndex(cell / columns, cell % columns);
+            if (goldIndex < 0 || !savedGold.get(goldIndex)) {
+                throw new IllegalArgumentException("The saved map has an invalid freed cell " + cell + ".");
+            }
+
+            savedCells[i] = cell;
+        }
+
+        random.setState(randomState);
+        collectedGold = savedGold;
+        freedCells = savedCells;
+        freedCellCount = savedCellCount;
+
+        Arrays.fill(chunkFreedCells, null);
+        Arrays.fill(chunkFreedCellCounts, 0);
+        for (int i = 0; i < freedCellCount; i++) {
+            addChunkFreedCell(freedCells[i]);
+        }
+    }
+
+    /**
+     * Adds a freed cell to the list of the chunk it is in.
+     * @param cell the index of the cell, i.e. row * columns + column.
+     */
+    private void addChunkFreedCell(int cell) {
+        int chunk = terrain.getChunk(cell / getNumberOfColumns());
+
+        int count = chunkFreedCellCounts[chunk];
+        if (chunkFreedCells[chunk] == null) {
+            chunkFreedCells[chunk] = new int[4];
+        } else if (count == chunkFreedCells[chunk].length) {
+            chunkFreedCells[chunk] = Arrays.copyOf(chunkFreedCells[chunk], count * 2);
+        }
+
+        chunkFreedCells[chunk][count] = cell;
+        chunkFreedCellCounts[chunk]++;
+    }
+
+    /**
+     * Picks the chunk a player is placed in, so that every cell players can be placed on is equally likely to be
+     * picked once a cell is picked from the chunk at random.
+     * <br></br>
+     * A chunk is picked at random and kept with a probability of its number of free cells over the number of cells
+     * a chunk holds, otherwise another is picked. Only the chunks picked are read, rather than every chunk being
+     * counted first. A map held in memory is a single chunk and is picked without a random choice, so its games
+     * make the same random choices as games recorded before the map was split into chunks.
+     * @return The index of the chunk, or -1 if no chunk has been found with a free cell after trying every chunk
+     * several times over.
+     */
+    public int getRandomSpawnChunk() {
+        int chunkCount = terrain.getChunkCount();
+        if (chunkCount == 1) {
+            return getSpawnCellCount(0) > 0 ? 0 : -1;
+        }
+
+        int chunkCells = terrain.getChunkRows() * getNumberOfColumns();
+        for (int attempt = 0; attempt < SPAWN_ATTEMPTS_PER_CHUNK * chunkCount; attempt++) {
+            int chunk = random.nextInt(chunkCount);
+            if (random.nextInt(chunkCells) < getSpawnCellCount(chunk)) {
+                return chunk;
+            }
+        }
+
+        // almost every cell is a wall, so take the first chunk that has a free cell at all
+        int first = random.nextInt(chunkCount);
+        for (int c = 0; c < chunkCount; c++) {
+            int chunk = (first + c) % chunkCount;
+            if (getSpawnCellCount(chunk) > 0) {
+                return chunk;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return The number of chunks of the terrain, players are placed by picking a chunk and then a cell in it.
+     */
+    public int getSpawnChunkCount() {
+        return terrain.getChunkCount();
+    }
+
+    /**
+     * @param chunk the index of a chunk of the terrain.
+     * @return The number of cells in the chunk players can currently be placed on, i.e. cells that are not walls
+     * or gold.
+     */
+    public int getSpawnCellCount(int chunk) {
+        return terrain.getSpawnCells(chunk).length + chunkFreedCellCounts[chunk];
+    }
+
+    /**
+     * Gets one of the cells of a chunk players can currently be placed on.
+     * @param chunk the index of a chunk of the terrain.
+     * @param index the position of the cell in the chunk's list of cells, less than
+     * {@link #getSpawnCellCount(int)}.
+     * @return The index of the cell, i.e. row * columns + column.
+     */
+    public int getSpawnCell(int chunk, int index) {
+        int[] terrainCells = terrain.getSpawnCells(chunk);
+        if (index < terrainCells.length) {
+            return terrainCells[index];
+        }
+
+        return chunkFreedCells[chunk][index - terrainCells.length];
+    }
+
+}
@@ -0,0 +1,181 @@
+package chat.system.game.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes terrains in the compact binary map file format.
+ * <br></br>
+ * A map file contains, in order: the magic number "CSMP", the format version, the gold required, the number of
+ * rows, the number of columns, the number of gold, the length of the name followed by the name in UTF-8, the
+ * index of every cell that contains gold in ascending order, and finally one byte per cell holding the character
+ * of the cell in row order. All numbers are big-endian.
+ */
+public final class MapFile {
+
+    private static final int MAGIC = 0x43534D50; // "CSMP"
+    private static final short VERSION = 1;
+
+    private static final int HEADER_LENGTH = 24; // the fixed length part of the header, up to the name
+
+    private static final int CHUNK_LENGTH = 1 << 20; // the approximate number of tiles mapped at a time
+
+    private MapFile() {
+    }
+
+    /**
+     * Opens a map file. Only the header and gold positions are read immediately, the tiles are mapped into memory
+     * in chunks the first time they are needed, so the file must not be changed while the terrain is in use.
+     * @param path the path of the map file.
+     * @return The terrain stored in the file.
+     * @throws IOException if the file cannot be read or is not a map file.
+     */
+    public static Terrain load(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            readFully(channel, header, 0);
+            header.flip();
+
+            if (header.getInt() != MAGIC) {
+                throw new IOException(path + " is not a map file.");
+            }
+
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new IOException(path + " has unsupported map file version " + version + ".");
+            }
+
+            int goldRequired = header.getInt();
+            int rows = header.getInt();
+            int columns = header.getInt();
+            int goldCount = header.getInt();
+            int nameLength = header.getShort() & 0xFFFF;
+
+            ByteBuffer nameBytes = ByteBuffer.allocate(nameLength);
+            readFully(channel, nameBytes, HEADER_LENGTH);
+            String name = new String(nameBytes.array(), StandardCharsets.UTF_8);
+
+            // every cell is indexed by row * columns + column, so the number of cells must fit in an int
+            if (rows <= 0 || columns <= 0 || (long) rows * columns > Integer.MAX_VALUE) {
+                throw new IOException(path + " has an invalid size of " + rows + " by " + columns + ".");
+            }
+            if (goldCount < 0 || goldCount > rows * columns) {
+                throw new IOException(path + " has an invalid amount of gold " + goldCount + ".");
+            }
+
+            long goldOffset = HEADER_LENGTH + nameLength;
+            long tilesOffset = goldOffset + 4L * goldCount;
+            if (channel.size() < tilesOffset + (long) rows * columns) {
+                throw new IOException(path + " is truncated or has an invalid size.");
+            }
+
+            int[] goldCells = new int[goldCount];
+            if (goldCount > 0) {
+                channel.map(FileChannel.MapMode.READ_ONLY, goldOffset, 4L * goldCount).asIntBuffer().get(goldCells);
+            }
+            checkGoldCells(path, channel, goldCells, rows * columns, tilesOffset);
+
+            int chunkRows = Math.max(1, CHUNK_LENGTH / columns);
+            return new Terrain(name, goldRequired, rows, columns, goldCells, channel, tilesOffset, chunkRows);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a terrain to a map file, replacing the file if it already exists.
+     * @param terrain the terrain to be written.
+     * @param path the path of the map file.
+     * @throws IOException if the file cannot be written.
+     */
+    public static void save(Terrain terrain, Path path) throws IOException {
+        byte[] name = terrain.getName().getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IOException("The name of map " + terrain.getName() + " is too long.");
+        }
+
+        int rows = terrain.getNumberOfRows();
+        int columns = terrain.getNumberOfColumns();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(terrain.getGoldRequired());
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeInt(terrain.getGoldCount());
+            out.writeShort(name.length);
+            out.write(name);
+
+            for (int i = 0; i < terrain.getGoldCount(); i++) {
+                out.writeInt(terrain.getGoldCell(i));
+            }
+
+            byte[] row = new byte[columns];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < columns; j++) {
+                    row[j] = (byte) terrain.getTile(i, j);
+                }
+
+                out.write(row);
+            }
+        }
+    }
+
+    /**
+     * Checks that the gold cells of a map file are in ascending order, inside the map and on cells that contain
+     * gold. Only the tile of each gold cell is read, so the rest of the tiles are still only read when needed.
+     * @param path the path of the map file, used in the error message.
+     * @param channel the open map file.
+     * @param goldCells the indexes of the cells that contain gold, as read from the file.
+     * @param cellCount the number of cells in the map.
+     * @param tilesOffset the position in the file of the first tile.
+     * @throws IOException if a gold cell is invalid or the file cannot be read.
+     */
+    private static void checkGoldCells(Path path, FileChannel channel, int[] goldCells, int cellCount,
+            long tilesOffset) throws IOException {
+        ByteBuffer tile = ByteBuffer.allocate(1);
+
+        for (int i = 0; i < goldCells.length; i++) {
+            int cell = goldCells[i];
+            if (cell < 0 || cell >= cellCount || (i > 0 && cell <= goldCells[i - 1])) {
+                throw new IOException(path + " has an invalid gold cell " + cell + ".");
+            }
+
+            tile.clear();
+            readFully(channel, tile, tilesOffset + cell);
+            if (tile.get(0) != 'G') {
+                throw new IOException(path + " has gold cell " + cell + " on a tile that is not gold.");
+            }
+        }
+    }
+
+    /**
+     * Reads from the channel until the buffer is full.
+     * @param channel the channel being read.
+     * @param buffer the buffer to fill.
+     * @param position the position in the channel to start reading from.
+     * @throws IOException if the end of the channel is reached before the buffer is full.
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of map file.");
+            }
+
+            position += read;
+        }
+    }
+
+}
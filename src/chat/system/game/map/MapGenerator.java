@@ -0,0 +1,260 @@
+package chat.system.game.map;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates random maps made of rectangular rooms joined by corridors.
+ * <br></br>
+ * The same seed and settings always produce the same map, so generated maps can be used to load test the game
+ * at any size and the tests can be repeated exactly.
+ */
+public class MapGenerator {
+
+    private static final int MIN_ROOM_SIZE = 3;
+    private static final int MAX_ROOM_SIZE = 10;
+
+    private static final int CELLS_PER_ROOM = 150; // the area of the map per room placed
+    private static final int BAND_HEIGHT = 20; // the height of the bands rooms are ordered in before being joined
+
+    private static final int EXITS = 2;
+
+    private long seed;
+
+    private double goldDensity; // the chance of each floor cell containing gold
+    private int goldRequired;
+
+    /**
+     * Constructor for MapGenerator object, uses a gold density of 1% and requires 2 gold to exit.
+     * @param seed the seed of the random numbers used to generate maps.
+     */
+    public MapGenerator(long seed) {
+        this.seed = seed;
+
+        goldDensity = 0.01;
+        goldRequired = 2;
+    }
+
+    /**
+     * Sets the chance of each floor cell containing gold.
+     * @param goldDensity the chance, between 0 and 1.
+     */
+    public void setGoldDensity(double goldDensity) {
+        if (goldDensity < 0 || goldDensity > 1) {
+            throw new IllegalArgumentException("Gold density must be between 0 and 1: " + goldDensity);
+        }
+
+        this.goldDensity = goldDensity;
+    }
+
+    /**
+     * Sets the gold required to exit generated maps, the maps will always contain at least this much gold.
+     * @param goldRequired the gold required.
+     */
+    public void setGoldRequired(int goldRequired) {
+        this.goldRequired = goldRequired;
+    }
+
+    /**
+     * Generates a new map.
+     * @param name the name of the map.
+     * @param rows the number of rows in the map.
+     * @param columns the number of columns in the map.
+     * @return The terrain of the generated map.
+     */
+    public Terrain generate(String name, int rows, int columns) {
+        if (rows < MIN_ROOM_SIZE + 2 || columns < MIN_ROOM_SIZE + 2) {
+            throw new IllegalArgumentException("Map must be at least " + (MIN_ROOM_SIZE + 2) + " cells in each direction.");
+        }
+
+        if ((long) rows * columns > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Map cannot have more than " + Integer.MAX_VALUE + " cells.");
+        }
+
+        Random random = new Random(seed);
+
+        byte[] tiles = new byte[rows * columns];
+        Arrays.fill(tiles, (byte) '#');
+
+        // place the rooms, each room is stored as its top row, left column, height and width
+        int roomCount = Math.max(1, rows * columns / CELLS_PER_ROOM);
+        int[] rooms = new int[roomCount * 4];
+        for (int r = 0; r < roomCount; r++) {
+            int height = MIN_ROOM_SIZE + random.nextInt(Math.min(MAX_ROOM_SIZE, rows - 2) - MIN_ROOM_SIZE + 1);
+            int width = MIN_ROOM_SIZE + random.nextInt(Math.min(MAX_ROOM_SIZE, columns - 2) - MIN_ROOM_SIZE + 1);
+            int top = 1 + random.nextInt(rows - 1 - height);
+            int left = 1 + random.nextInt(columns - 1 - width);
+
+            rooms[r * 4] = top;
+            rooms[r * 4 + 1] = left;
+            rooms[r * 4 + 2] = height;
+            rooms[r * 4 + 3] = width;
+
+            for (int i = top; i < top + height; i++) {
+                Arrays.fill(tiles, i * columns + left, i * columns + left + width, (byte) '.');
+            }
+        }
+
+        // join the rooms in a snaking order through horizontal bands of the map, so every room is
+        // reachable and the corridors between consecutive rooms stay short
+        long[] order = new long[roomCount];
+        for (int r = 0; r < roomCount; r++) {
+            int centreRow = rooms[r * 4] + rooms[r * 4 + 2] / 2;
+            int centreColumn = rooms[r * 4 + 1] + rooms[r * 4 + 3] / 2;
+            int band = centreRow / BAND_HEIGHT;
+            long position = (long) band * columns + (band % 2 == 0 ? centreColumn : columns - centreColumn);
+
+            order[r] = position << 32 | r;
+        }
+        Arrays.sort(order);
+
+        for (int k = 1; k < roomCount; k++) {
+            int from = (int) order[k - 1];
+            int to = (int) order[k];
+
+            carveCorridor(tiles, columns, random.nextBoolean(),
+                    rooms[from * 4] + rooms[from * 4 + 2] / 2, rooms[from * 4 + 1] + rooms[from * 4 + 3] / 2,
+                    rooms[to * 4] + rooms[to * 4 + 2] / 2, rooms[to * 4 + 1] + rooms[to * 4 + 3] / 2);
+        }
+
+        for (int e = 0; e < EXITS; e++) {
+            tiles[randomRoomCell(rooms, roomCount, columns, random)] = 'E';
+        }
+
+        // scatter the gold over the floor, then add more if there is not enough to exit the map
+        int goldCount = 0;
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (tiles[cell] == '.' && random.nextDouble() < goldDensity) {
+                tiles[cell] = 'G';
+                goldCount++;
+            }
+        }
+
+        int attempts = 0;
+        while (goldCount < goldRequired && attempts++ < tiles.length) {
+            int cell = randomRoomCell(rooms, roomCount, columns, random);
+            if (tiles[cell] == '.') {
+                tiles[cell] = 'G';
+                goldCount++;
+            }
+        }
+
+        return new Terrain(name, goldRequired, rows, columns, tiles);
+    }
+
+    /**
+     * Carves an L shaped corridor of floor between two cells.
+     * @param tiles the tiles of the map.
+     * @param columns the number of columns in the map.
+     * @param horizontalFirst if true the corridor leaves the first cell horizontally, otherwise vertically.
+     * @param fromRow the row of the first cell.
+     * @param fromColumn the column of the first cell.
+     * @param toRow the row of the second cell.
+     * @param toColumn the column of the second cell.
+     */
+    private static void carveCorridor(byte[] tiles, int columns, boolean horizontalFirst,
+            int fromRow, int fromColumn, int toRow, int toColumn) {
+        int cornerRow = horizontalFirst ? fromRow : toRow;
+        int cornerColumn = horizontalFirst ? toColumn : fromColumn;
+
+        for (int j = Math.min(fromColumn, toColumn); j <= Math.max(fromColumn, toColumn); j++) {
+            carveFloor(tiles, cornerRow * columns + j);
+        }
+
+        for (int i = Math.min(fromRow, toRow); i <= Math.max(fromRow, toRow); i++) {
+            carveFloor(tiles, i * columns + cornerColumn);
+        }
+    }
+
+    /**
+     * Turns a wall cell into floor, leaving any other cell unchanged.
+     * @param tiles the tiles of the map.
+     * @param cell the index of the cell.
+     */
+    private static void carveFloor(byte[] tiles, int cell) {
+        if (tiles[cell] == '#') {
+            tiles[cell] = '.';
+        }
+    }
+
+    /**
+     * @param rooms the top row, left column, height and width of each room.
+     * @param roomCount the number of rooms.
+     * @param columns the number of columns in the map.
+     * @param random the random number generator of the map being generated.
+     * @return The index of a random cell inside a random room.
+     */
+    private static int randomRoomCell(int[] rooms, int roomCount, int columns, Random random) {
+        int r = random.nextInt(roomCount);
+        int row = rooms[r * 4] + random.nextInt(rooms[r * 4 + 2]);
+        int column = rooms[r * 4 + 1] + random.nextInt(rooms[r * 4 + 3]);
+
+        return row * columns + column;
+    }
+
+    /**
+     * Generates a map and writes it to a map file. The size, seed, gold density, gold required and file can be set
+     * with the -rows, -columns, -seed, -gold, -required and -out options.
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        int rows = 1000;
+        int columns = 1000;
+        long seed = 0;
+        double goldDensity = 0.01;
+        int goldRequired = 2;
+        String out = "generated.map";
+
+        try {
+            for (int i = 0; i < args.length - 1; i += 2) {
+                switch (args[i]) {
+                    case "-rows": rows = Integer.parseInt(args[i + 1]);
+                                  break;
+
+                    case "-columns": columns = Integer.parseInt(args[i + 1]);
+                                     break;
+
+                    case "-seed": seed = Long.parseLong(args[i + 1]);
+                                  break;
+
+                    case "-gold": goldDensity = Double.parseDouble(args[i + 1]);
+                                  break;
+
+                    case "-required": goldRequired = Integer.parseInt(args[i + 1]);
+                                      break;
+
+                    case "-out": out = args[i + 1];
+                                 break;
+
+                    default: System.out.println("Unknown option " + args[i] + " ignored.");
+                             break;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Option values must be numbers, please try again with valid values.");
+            System.exit(0);
+        }
+
+        MapGenerator generator = new MapGenerator(seed);
+        generator.setGoldDensity(goldDensity);
+        generator.setGoldRequired(goldRequired);
+
+        long start = System.nanoTime();
+        Terrain terrain = generator.generate("Generated Map " + seed, rows, columns);
+        long generated = System.nanoTime();
+
+        try {
+            MapFile.save(terrain, Paths.get(out));
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(0);
+        }
+
+        System.out.println("Generated " + rows + "x" + columns + " map with " + terrain.getGoldCount() + " gold in "
+                + (generated - start) / 1000000 + " ms, written to " + out + " in "
+                + (System.nanoTime() - generated) / 1000000 + " ms.");
+    }
+
+}
@@ -0,0 +1,326 @@
+package chat.system.game.map;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The unchanging layout of a map, i.e. its walls, floor, exits and the starting positions of the gold.
+ * <br></br>
+ * A terrain is never modified once created, so a single instance is shared by every game played on it. Anything
+ * that changes during a game, such as gold being picked up, is stored by the {@link Map} of that game instead.
+ * <br></br>
+ * The tiles are stored in chunks of whole rows. Terrains loaded by {@link MapFile} map each chunk of the file into
+ * memory the first time a cell inside it is read, so only the parts of a large map that are played on are loaded.
+ */
+public final class Terrain {
+
+    /**
+     * The default terrain "Chat System Map".
+     */
+    public static final Terrain DEFAULT = new Terrain("Chat System Map", 2, new char[][] {
+            {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#'},
+            {'#', 'E', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '#'},
+            {'#', '#', '#', '#', '.', '.', '#', 'G', '#', '.', '.', '.', '.', '.', '.', '.', '.', '.', '.', '#'},
+            {'#', '.', '.', '#', '.', '.', '#', '#', '#', '.', '.', '#', '#', '#', '.', '.', '.', '.', '.', '#'},
+            {'#', '.', '.', '.', '.', '.', '.', '#', '#', '.', '.', '#', '#', '#', '.', '#', '#', '#', '.', '#'},
+            {'#', '.', '.', '#', '#', '#', '.', '.', '#', '.', '.', '#', 'G', '#', '.', '.', '.', '#', '.', '#'},
+            {'#', '.', '.', '.', 'G', '#', '.', '.', '.', '.', '.', '#', '.', '#', '#', '#', '.', '#', '.', '#'},
+            {'#', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '#', '.', '.', '.', '.', '.', '#', 'E', '#'},
+            {'#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#', '#'}});
+
+    private final String name;
+
+    private final int goldRequired;
+
+    private final int rows;
+    private final int columns;
+
+    private final int[] goldCells; // the indexes of the cells that start with gold, in ascending order
+
+    // the character of each cell, each chunk holds chunkRows rows indexed by row * columns + column
+    private final AtomicReferenceArray<ByteBuffer> chunks;
+    private final int chunkRows;
+
+    // the indexes of the cells in each chunk that are neither walls nor gold, found when the chunk is first spawned in
+    private final AtomicReferenceArray<int[]> spawnCells;
+
+    // the file the chunks are mapped from and the position of the first tile in it, null for in-memory terrains
+    private final FileChannel channel;
+    private final long tilesOffset;
+
+    /**
+     * Constructor for Terrain object, copies the layout given so later changes to the array have no effect.
+     * @param name the name of the map.
+     * @param goldRequired the gold required to exit the map.
+     * @param layout the character of each cell of the map, every row must have the same length.
+     */
+    public Terrain(String name, int goldRequired, char[][] layout) {
+        this(name, goldRequired, layout.length, layout[0].length, encode(name, layout));
+    }
+
+    /**
+     * Constructor for a terrain whose tiles are already encoded, one byte per cell in row order.
+     * @param name the name of the map.
+     * @param goldRequired the gold required to exit the map.
+     * @param rows the number of rows in the map.
+     * @param columns the number of columns in the map.
+     * @param tiles the character of each cell, indexed by row * columns + column.
+     */
+    Terrain(String name, int goldRequired, int rows, int columns, byte[] tiles) {
+        this.name = name;
+        this.goldRequired = goldRequired;
+        this.rows = rows;
+        this.columns = columns;
+
+        int[] gold = new int[tiles.length];
+        int goldCount = 0;
+        for (int cell = 0; cell < tiles.length; cell++) {
+            if (tiles[cell] == 'G') {
+                gold[goldCount++] = cell;
+            }
+        }
+        goldCells = Arrays.copyOf(gold, goldCount);
+
+        chunks = new AtomicReferenceArray<ByteBuffer>(new ByteBuffer[] {ByteBuffer.wrap(tiles)});
+        chunkRows = rows;
+        channel = null;
+        tilesOffset = 0;
+
+        spawnCells = new AtomicReferenceArray<int[]>(1);
+    }
+
+    /**
+     * Constructor for a terrain whose tiles are mapped from a file as they are needed.
+     * @param name the name of the map.
+     * @param goldRequired the gold required to exit the map.
+     * @param rows the number of rows in the map.
+     * @param columns the number of columns in the map.
+     * @param goldCells the indexes of the cells that contain gold, in ascending order.
+     * @param channel the open file containing the tiles, one byte per cell in row order.
+     * @param tilesOffset the position in the file of the first tile.
+     * @param chunkRows the number of rows mapped at a time.
+     */
+    Terrain(String name, int goldRequired, int rows, int columns, int[] goldCells, FileChannel channel,
+            long tilesOffset, int chunkRows) {
+        this.name = name;
+        this.goldRequired = goldRequired;
+        this.rows = rows;
+        this.columns = columns;
+        this.goldCells = goldCells;
+        this.channel = channel;
+        this.tilesOffset = tilesOffset;
+        this.chunkRows = chunkRows;
+
+        chunks = new AtomicReferenceArray<ByteBuffer>((rows + chunkRows - 1) / chunkRows);
+        spawnCells = new AtomicReferenceArray<int[]>(chunks.length());
+    }
+
+    /**
+     * @return The name of the map.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Gold required to exit the map.
+     */
+    public int getGoldRequired() {
+        return goldRequired;
+    }
+
+    /**
+     * @return The number of rows in the map.
+     */
+    public int getNumberOfRows() {
+        return rows;
+    }
+
+    /**
+     * @return The number of columns in the map.
+     */
+    public int getNumberOfColumns() {
+        return columns;
+    }
+
+    /**
+     * @return The number of cells that start with gold.
+     */
+    public int getGoldCount() {
+        return goldCells.length;
+    }
+
+    /**
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return True if the given position is inside the map.
+     */
+    public boolean contains(int row, int column) {
+        return row >= 0 && row < rows && column >= 0 && column < columns;
+    }
+
+    /**
+     * @param row the row of the cell, must be inside the map.
+     * @param column the column of the cell, must be inside the map.
+     * @return The character of the cell at the start of a game.
+     */
+    public char getTile(int row, int column) {
+        int chunk = row / chunkRows;
+
+        ByteBuffer tiles = chunks.get(chunk);
+        if (tiles == null) {
+            tiles = mapChunk(chunk);
+        }
+
+        return (char) (tiles.get((row - chunk * chunkRows) * columns + column) & 0xFF);
+    }
+
+    /**
+     * Maps the rows of the given chunk from the file of the terrain into memory.
+     * @param chunk the index of the chunk.
+     * @return The tiles of the chunk.
+     */
+    private synchronized ByteBuffer mapChunk(int chunk) {
+        ByteBuffer tiles = chunks.get(chunk);
+        if (tiles != null) {
+            return tiles;
+        }
+
+        int chunkLength = Math.min(chunkRows, rows - chunk * chunkRows) * columns;
+        long position = tilesOffset + (long) chunk * chunkRows * columns;
+
+        try {
+            tiles = channel.map(FileChannel.MapMode.READ_ONLY, position, chunkLength);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read chunk " + chunk + " of map " + name, e);
+        }
+
+        chunks.set(chunk, tiles);
+        return tiles;
+    }
+
+    /**
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return True if the cell is a wall or is outside the map.
+     */
+    public boolean isWall(int row, int column) {
+        return !contains(row, column) || getTile(row, column) == '#';
+    }
+
+    /**
+     * @return The number of chunks the rows of the terrain are stored in.
+     */
+    int getChunkCount() {
+        return chunks.length();
+    }
+
+    /**
+     * @return The number of rows in each chunk, the last chunk may have fewer.
+     */
+    int getChunkRows() {
+        return chunkRows;
+    }
+
+    /**
+     * @param row a row of the map.
+     * @return The index of the chunk holding the row.
+     */
+    int getChunk(int row) {
+        return row / chunkRows;
+    }
+
+    /**
+     * Gets the cells of a chunk that players can be placed on at the start of a game, i.e. every cell that is not a
+     * wall and does not contain gold. The cells of a chunk are found the first time a player is placed in it and then
+     * shared by every game, so placing players never reads the chunks no one is placed in.
+     * @param chunk the index of the chunk.
+     * @return The indexes of the cells, i.e. row * columns + column, in ascending order.
+     */
+    int[] getSpawnCells(int chunk) {
+        int[] cells = spawnCells.get(chunk);
+        if (cells == null) {
+            // two threads may both scan the chunk, but they find the same cells
+            cells = findSpawnCells(chunk);
+            spawnCells.set(chunk, cells);
+        }
+
+        return cells;
+    }
+
+    /**
+     * Scans every cell of a chunk for the cells that players can be placed on.
+     * @param chunk the index of the chunk.
+     * @return The indexes of the cells, in ascending order.
+     */
+    private int[] findSpawnCells(int chunk) {
+        int[] cells = new int[16];
+        int count = 0;
+
+        int end = Math.min(rows, (chunk + 1) * chunkRows);
+        for (int i = chunk * chunkRows; i < end; i++) {
+            for (int j = 0; j < columns; j++) {
+                char tile = getTile(i, j);
+                if (tile != '#' && tile != 'G') {
+                    if (count == cells.length) {
+                        cells = Arrays.copyOf(cells, count * 2);
+                    }
+
+                    cells[count++] = i * columns + j;
+                }
+            }
+        }
+
+        return Arrays.copyOf(cells, count);
+    }
+
+    /**
+     * @param goldIndex the position of the gold in the list of cells that start with gold.
+     * @return The index of the cell, i.e. row * columns + column, that the gold starts in.
+     */
+    public int getGoldCell(int goldIndex) {
+        return goldCells[goldIndex];
+    }
+
+    /**
+     * @param row the row of the cell.
+     * @param column the column of the cell.
+     * @return The position of the cell in the list of cells that start with gold, or a negative number if the
+     * cell does not start with gold.
+     */
+    public int getGoldIndex(int row, int column) {
+        if (!contains(row, column)) {
+            return -1;
+        }
+
+        return Arrays.binarySearch(goldCells, row * columns + column);
+    }
+
+    /**
+     * Converts a layout into one byte per cell in row order.
+     * @param name the name of the map, used in the error message if the layout is not rectangular.
+     * @param layout the character of each cell of the map.
+     * @return The encoded tiles.
+     */
+    private static byte[] encode(String name, char[][] layout) {
+        int columns = layout[0].length;
+        byte[] tiles = new byte[layout.length * columns];
+
+        for (int i = 0; i < layout.length; i++) {
+            if (layout[i].length != columns) {
+                throw new IllegalArgumentException("Row " + i + " of map " + name + " has the wrong length.");
+            }
+
+            for (int j = 0; j < columns; j++) {
+                tiles[i * columns + j] = (byte) layout[i][j];
+            }
+        }
+
+        return tiles;
+    }
+
+}
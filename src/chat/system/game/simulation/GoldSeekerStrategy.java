@@ -0,0 +1,217 @@
+package chat.system.game.simulation;
+
+import java.util.Random;
+
+/**
+ * Plays the game the way a careful human would: it walks towards the nearest gold it can see until it has enough,
+ * then walks towards the nearest exit, keeping out of reach of the bot. When it cannot see what it is looking for it
+ * keeps walking in the same direction until it is blocked.
+ * <br></br>
+ * Looking around takes a turn, so while what it is walking towards is still in the view it last saw, and the bot was
+ * not close, it keeps walking from memory instead of looking again.
+ */
+public class GoldSeekerStrategy implements Strategy {
+
+    private static final char[] DIRECTIONS = {'N', 'E', 'S', 'W'};
+    private static final int[] ROW_OFFSETS = {-1, 0, 1, 0};
+    private static final int[] COLUMN_OFFSETS = {0, 1, 0, -1};
+
+    private static final int BOT_PENALTY = 10; // added to the score of a step that ends next to the bot
+
+    private Random random;
+
+    private String lastAction;
+
+    private int goldRequired;
+    private int gold;
+
+    private char[][] view; // the most recent result of LOOK, by row and column
+
+    // the position of the player in the view, which moves away from the centre as the player walks from memory
+    private int viewRow;
+    private int viewColumn;
+    private int nextRow;
+    private int nextColumn;
+    private char steppedOnto; // the character of the cell the most recent move was into
+    private int heading; // the index of the direction the strategy is exploring in
+
+    @Override
+    public void startGame(Random random) {
+        this.random = random;
+
+        lastAction = null;
+        goldRequired = Integer.MAX_VALUE;
+        gold = 0;
+        view = null;
+        steppedOnto = '.';
+        heading = random.nextInt(DIRECTIONS.length);
+    }
+
+    @Override
+    public String nextAction(String previousResult) {
+        String action = chooseAction(previousResult);
+        lastAction = action;
+
+        return action;
+    }
+
+    /**
+     * @param previousResult the result of the previous action, or null if this is the first action of the game.
+     * @return The next command to enter.
+     */
+    private String chooseAction(String previousResult) {
+        if (lastAction == null) {
+            return "HELLO";
+        }
+
+        if (lastAction.equals("HELLO")) {
+            goldRequired = Integer.parseInt(previousResult.substring(previousResult.indexOf(':') + 1).trim());
+        } else if (lastAction.equals("PICKUP")) {
+            if (previousResult.startsWith("Success")) {
+                gold++;
+            }
+        } else if (lastAction.startsWith("MOVE ")) {
+            if (previousResult.equals("Success")) {
+                viewRow = nextRow;
+                viewColumn = nextColumn;
+
+                if (steppedOnto == 'G' && gold < goldRequired) {
+                    view[viewRow][viewColumn] = '.';
+                    return "PICKUP";
+                } else if (steppedOnto == 'E' && gold >= goldRequired) {
+                    return "EXIT";
+                }
+
+                String move = chooseMove(false);
+                if (move != null) {
+                    return move;
+                }
+            }
+        } else if (lastAction.equals("LOOK")) {
+            readView(previousResult);
+            return chooseMove(true);
+        }
+
+        return "LOOK";
+    }
+
+    /**
+     * Stores the result of LOOK as a grid of characters.
+     * @param look the result of LOOK, a new line followed by each row of the view on its own line.
+     */
+    private void readView(String look) {
+        String[] rows = look.trim().split("\n");
+
+        if (view == null || view.length != rows.length) {
+            view = new char[rows.length][];
+        }
+
+        for (int i = 0; i < rows.length; i++) {
+            view[i] = rows[i].toCharArray();
+        }
+
+        viewRow = rows.length / 2;
+        viewColumn = rows.length / 2;
+    }
+
+    /**
+     * Chooses the step that brings the player closest to what it is looking for without ending next to the bot.
+     * @param freshView true if the view has just been seen, false if the player has moved since.
+     * @return The move command, or null if the player should look again before moving.
+     */
+    private String chooseMove(boolean freshView) {
+        if (viewRow < 1 || viewRow >= view.length - 1 || viewColumn < 1 || viewColumn >= view[viewRow].length - 1) {
+            // the view does not show the neighbouring cells
+            return freshView ? "MOVE " + DIRECTIONS[random.nextInt(DIRECTIONS.length)] : null;
+        }
+
+        char target = gold < goldRequired ? 'G' : 'E';
+
+        // find the nearest cell containing the target
+        int targetRow = -1;
+        int targetColumn = -1;
+        int targetDistance = Integer.MAX_VALUE;
+
+        for (int i = 0; i < view.length; i++) {
+            for (int j = 0; j < view[i].length; j++) {
+                int distance = Math.abs(i - viewRow) + Math.abs(j - viewColumn);
+                if (view[i][j] == target && distance < targetDistance) {
+                    targetRow = i;
+                    targetColumn = j;
+                    targetDistance = distance;
+                }
+            }
+        }
+
+        // the bot has moved since the view was seen, so only walk from memory towards a target well away from it
+        if (!freshView && (targetRow == -1 || isNearBot(viewRow, viewColumn, 2))) {
+            return null;
+        }
+
+        int bestDirection = -1;
+        int bestScore = Integer.MAX_VALUE;
+
+        for (int k = 0; k < DIRECTIONS.length; k++) {
+            int row = viewRow + ROW_OFFSETS[k];
+            int column = viewColumn + COLUMN_OFFSETS[k];
+
+            if (view[row][column] == '#' || view[row][column] == 'B') {
+                continue;
+            }
+
+            int score;
+            if (targetRow != -1) {
+                score = 2 * (Math.abs(targetRow - row) + Math.abs(targetColumn - column));
+            } else {
+                // nothing to walk towards, so prefer to keep exploring in the same direction
+                score = k == heading ? 0 : 1;
+            }
+
+            // turning back is the last choice, otherwise the player paces up and down corridors
+            if (k == (heading + 2) % DIRECTIONS.length) {
+                score += 1;
+            }
+
+            if (isNearBot(row, column, 1)) {
+                score += BOT_PENALTY;
+            }
+
+            if (score < bestScore) {
+                bestScore = score;
+                bestDirection = k;
+            }
+        }
+
+        if (bestDirection == -1) {
+            // boxed in, try any direction
+            bestDirection = random.nextInt(DIRECTIONS.length);
+        }
+
+        heading = bestDirection;
+
+        nextRow = viewRow + ROW_OFFSETS[bestDirection];
+        nextColumn = viewColumn + COLUMN_OFFSETS[bestDirection];
+        steppedOnto = view[nextRow][nextColumn];
+
+        return "MOVE " + DIRECTIONS[bestDirection];
+    }
+
+    /**
+     * @param row the row of a cell of the view.
+     * @param column the column of a cell of the view.
+     * @param distance the number of cells around the given cell to check, including diagonally.
+     * @return True if the bot was seen within the given distance of the cell.
+     */
+    private boolean isNearBot(int row, int column, int distance) {
+        for (int i = Math.max(0, row - distance); i <= Math.min(view.length - 1, row + distance); i++) {
+            for (int j = Math.max(0, column - distance); j <= Math.min(view[i].length - 1, column + distance); j++) {
+                if (view[i][j] == 'B') {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+}
@@ -0,0 +1,34 @@
+package chat.system.game.simulation;
+
+import java.util.Random;
+
+/**
+ * Wanders the map at random, trying to pick up gold after every step. It never tries to exit, so it is a baseline
+ * for how long a player survives without looking for the bot.
+ */
+public class RandomStrategy implements Strategy {
+
+    private static final String[] MOVES = {"MOVE N", "MOVE E", "MOVE S", "MOVE W"};
+
+    private Random random;
+
+    private boolean moved; // true if the previous action was a move, so the next action is a pickup
+
+    @Override
+    public void startGame(Random random) {
+        this.random = random;
+        moved = false;
+    }
+
+    @Override
+    public String nextAction(String previousResult) {
+        moved = !moved;
+
+        if (moved) {
+            return MOVES[random.nextInt(MOVES.length)];
+        } else {
+            return "PICKUP";
+        }
+    }
+
+}
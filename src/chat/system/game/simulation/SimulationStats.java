@@ -0,0 +1,113 @@
+package chat.system.game.simulation;
+
+/**
+ * Totals of the outcomes of simulated games.
+ * <br></br>
+ * Each simulator thread adds its games to its own SimulationStats, so no locking is needed while games are being
+ * played, and the totals of every thread are merged once all the games have finished.
+ */
+public class SimulationStats {
+
+    private long games;
+    private long wins;
+    private long losses; // games where the player tried to exit without enough gold or away from the exit
+    private long captures;
+    private long timeouts; // games that reached the turn limit without finishing
+
+    private long turns;
+    private long turnsToCapture; // the total turns of the games that ended in a capture
+
+    /**
+     * Adds the outcome of a game to the totals.
+     * @param outcome the way the game ended.
+     * @param gameTurns the number of turns the game lasted.
+     */
+    public void addGame(Outcome outcome, int gameTurns) {
+        games++;
+        turns += gameTurns;
+
+        switch (outcome) {
+            case WIN:
+                wins++;
+                break;
+
+            case LOSS:
+                losses++;
+                break;
+
+            case CAPTURE:
+                captures++;
+                turnsToCapture += gameTurns;
+                break;
+
+            default:
+                timeouts++;
+                break;
+        }
+    }
+
+    /**
+     * Adds the totals of another set of games to these totals.
+     * @param other the totals to be added.
+     */
+    public void merge(SimulationStats other) {
+        games += other.games;
+        wins += other.wins;
+        losses += other.losses;
+        captures += other.captures;
+        timeouts += other.timeouts;
+
+        turns += other.turns;
+        turnsToCapture += other.turnsToCapture;
+    }
+
+    /**
+     * @return The number of games played.
+     */
+    public long getGames() {
+        return games;
+    }
+
+    /**
+     * @return The number of turns played over every game.
+     */
+    public long getTurns() {
+        return turns;
+    }
+
+    /**
+     * @return The fraction of games the player won.
+     */
+    public double getWinRate() {
+        return games == 0 ? 0 : (double) wins / games;
+    }
+
+    /**
+     * @return The fraction of games where the player was caught by the bot.
+     */
+    public double getCaptureRate() {
+        return games == 0 ? 0 : (double) captures / games;
+    }
+
+    /**
+     * @return The mean number of turns before the player was caught, over the games where they were caught.
+     */
+    public double getAverageTurnsToCapture() {
+        return captures == 0 ? 0 : (double) turnsToCapture / captures;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d games: %d won (%.1f%%), %d caught (%.1f%%, after %.1f turns on average), "
+                + "%d lost, %d timed out, %d turns in total", games, wins, getWinRate() * 100, captures,
+                getCaptureRate() * 100, getAverageTurnsToCapture(), losses, timeouts, turns);
+    }
+
+    /**
+     * The ways a simulated game can end.
+     */
+    public enum Outcome {
+        WIN, LOSS, CAPTURE, TIMEOUT
+    }
+
+}
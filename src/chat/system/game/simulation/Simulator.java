@@ -0,0 +1,189 @@
+package chat.system.game.simulation;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import chat.system.game.main.GameLogic;
+import chat.system.game.map.MapFile;
+import chat.system.game.map.Terrain;
+
+/**
+ * Plays many games without a chat server or a human, with a {@link Strategy} entering the commands, to measure how
+ * a map and its bot play and how fast the game runs.
+ * <br></br>
+ * Games are independent, each has its own map state and random generator, so they are spread over every thread of
+ * a fork/join pool. Game i is played with seed baseSeed + i, so a simulation gives the same results however many
+ * threads play it. Every thread keeps its own strategy and its own totals, and the totals are only merged once
+ * all the games have finished.
+ */
+public class Simulator {
+
+    private static final int DEFAULT_MAX_TURNS = 10000;
+
+    private Terrain terrain;
+    private Supplier<Strategy> strategies; // creates the strategy of each thread
+    private int maxTurns; // games still running after this many turns are counted as timed out
+
+    /**
+     * Constructor for a Simulator object.
+     * @param terrain the terrain every game is played on.
+     * @param strategies creates the strategy used by each thread.
+     * @param maxTurns the number of turns after which a game is stopped.
+     */
+    public Simulator(Terrain terrain, Supplier<Strategy> strategies, int maxTurns) {
+        this.terrain = terrain;
+        this.strategies = strategies;
+        this.maxTurns = maxTurns;
+    }
+
+    /**
+     * Plays a number of games in parallel.
+     * @param games the number of games to play.
+     * @param baseSeed the seed of the first game, each following game uses the next seed.
+     * @param threads the number of threads to play the games on.
+     * @return The totals of every game played.
+     */
+    public SimulationStats run(long games, final long baseSeed, int threads) {
+        // the totals of each thread, registered when the thread plays its first game so they can be merged later
+        final Queue<SimulationStats> allStats = new ConcurrentLinkedQueue<SimulationStats>();
+        final ThreadLocal<SimulationStats> stats = ThreadLocal.withInitial(() -> {
+            SimulationStats threadStats = new SimulationStats();
+            allStats.add(threadStats);
+            return threadStats;
+        });
+        final ThreadLocal<Strategy> strategy = ThreadLocal.withInitial(strategies);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.submit(() -> LongStream.range(0, games).parallel()
+                    .forEach(i -> playGame(baseSeed + i, strategy.get(), stats.get()))).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A simulated game failed.", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+
+        SimulationStats total = new SimulationStats();
+        for (SimulationStats threadStats : allStats) {
+            total.merge(threadStats);
+        }
+
+        return total;
+    }
+
+    /**
+     * Plays a single game to the end, or until the turn limit is reached.
+     * @param seed the seed of the game.
+     * @param strategy the strategy entering the commands.
+     * @param stats the totals the outcome of the game is added to.
+     */
+    private void playGame(long seed, Strategy strategy, SimulationStats stats) {
+        GameLogic game = new GameLogic(terrain, seed);
+        game.runGame();
+
+        // the strategy gets its own generator so its choices do not change the game's random choices
+        strategy.startGame(new Random(~seed));
+
+        String result = null;
+        int turns = 0;
+
+        while (turns < maxTurns) {
+            result = game.processAction(strategy.nextAction(result));
+            turns++;
+
+            if (result.contains("caught")) {
+                stats.addGame(SimulationStats.Outcome.CAPTURE, turns);
+                return;
+            } else if (result.startsWith("WIN")) {
+                stats.addGame(SimulationStats.Outcome.WIN, turns);
+                return;
+            } else if (result.equals("LOSE")) {
+                stats.addGame(SimulationStats.Outcome.LOSS, turns);
+                return;
+            }
+        }
+
+        stats.addGame(SimulationStats.Outcome.TIMEOUT, turns);
+    }
+
+    /**
+     * @param name the name of a strategy, "random" or "gold".
+     * @return A creator of strategies of that type.
+     */
+    private static Supplier<Strategy> getStrategies(String name) {
+        switch (name) {
+            case "random":
+                return RandomStrategy::new;
+
+            case "gold":
+                return GoldSeekerStrategy::new;
+
+            default:
+                throw new IllegalArgumentException("Unknown strategy " + name + ", use random or gold.");
+        }
+    }
+
+    /**
+     * Runs a simulation and prints its results. The options are -games, -threads, -strategy (random or gold),
+     * -seed, -turns (the turn limit of each game) and -gcm (the map file to play on).
+     * @param args the command line arguments.
+     */
+    public static void main(String[] args) {
+        long games = 10000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String strategy = "gold";
+        long seed = 1;
+        int maxTurns = DEFAULT_MAX_TURNS;
+        Terrain terrain = Terrain.DEFAULT;
+
+        try {
+            for (int i = 0; i < args.length - 1; i += 2) {
+                switch (args[i]) {
+                    case "-games":
+                        games = Long.parseLong(args[i + 1]);
+                        break;
+                    case "-threads":
+                        threads = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-strategy":
+                        strategy = args[i + 1];
+                        break;
+                    case "-seed":
+                        seed = Long.parseLong(args[i + 1]);
+                        break;
+                    case "-turns":
+                        maxTurns = Integer.parseInt(args[i + 1]);
+                        break;
+                    case "-gcm":
+                        terrain = MapFile.load(Paths.get(args[i + 1]));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+                }
+            }
+
+            Simulator simulator = new Simulator(terrain, getStrategies(strategy), maxTurns);
+
+            long start = System.nanoTime();
+            SimulationStats stats = simulator.run(games, seed, threads);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(stats);
+            System.out.printf("%.2f s on %d threads: %.0f games per second, %.0f turns per second%n", seconds,
+                    threads, stats.getGames() / seconds, stats.getTurns() / seconds);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("The simulation could not be run: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+}
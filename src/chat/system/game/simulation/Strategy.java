@@ -0,0 +1,25 @@
+package chat.system.game.simulation;
+
+import java.util.Random;
+
+/**
+ * A scripted way of playing the game, used by the {@link Simulator} in place of a human typing commands.
+ * <br></br>
+ * A strategy only sees what a human would see, i.e. the result of each command it enters. Each thread of the
+ * simulator has its own strategy object, which is reused for every game that thread plays.
+ */
+public interface Strategy {
+
+    /**
+     * Called before the first action of every game, so the strategy can forget the previous game.
+     * @param random the random generator the strategy must make all its random choices with.
+     */
+    void startGame(Random random);
+
+    /**
+     * @param previousResult the result of the previous action, or null if this is the first action of the game.
+     * @return The next command to enter, in the same form a human would type it.
+     */
+    String nextAction(String previousResult);
+
+}
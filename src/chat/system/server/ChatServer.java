@@ -24,6 +24,10 @@ public class ChatServer {
 
     private String playerClient; // field to store the name of the client playing the game
 
+    private SpectatorFeed spectatorFeed; // the users watching the game
+
+    private MessageSearch messageSearch; // the index of the messages sent to every user
+
     /**
      * Constructor to instantiate a new server. It initialises the server socket
      * object and the HashSet used to store the threads running.
@@ -34,6 +38,10 @@ public class ChatServer {
             serverSocket = new ServerSocket(port);
 
             users = new HashSet<ServerThread>();
+
+            spectatorFeed = new SpectatorFeed();
+
+            messageSearch = new MessageSearch();
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -55,6 +63,20 @@ public class ChatServer {
         this.playerClient = playerClient;
     }
 
+    /**
+     * @return The feed that sends the frames of the game to the users spectating it.
+     */
+    public SpectatorFeed getSpectatorFeed() {
+        return spectatorFeed;
+    }
+
+    /**
+     * @return The index users search the messages sent to the chat with.
+     */
+    public MessageSearch getMessageSearch() {
+        return messageSearch;
+    }
+
     /**
      * Method that starts the server running. It also starts a new instance of a
      * Thread that is used to stop the server when the server master enters "exit"
@@ -112,11 +134,14 @@ public class ChatServer {
     /**
      * Adds the given ServerThread, representing a user, to the set of ServerThread
      * objects. Once an object has been added to the set, the thread it is run on is
-     * started.
+     * started. The set is only changed while holding the server's lock, which every ServerThread holds while
+     * sending a message to all users, so a user connecting never interrupts a message being sent.
      * @param user: The instance of a ServerThread to be added to the set.
      */
     public void addUser(ServerThread user) {
-        users.add(user);
+        synchronized (this) {
+            users.add(user);
+        }
         user.start();
     }
 
@@ -128,7 +153,10 @@ public class ChatServer {
      * @param user The instance of the ServerThread to be removed from the set.
      */
     public void removeUser(ServerThread user) {
-        users.remove(user);
+        synchronized (this) {
+            users.remove(user);
+        }
+        spectatorFeed.removeSpectator(user);
         try {
             user.join();
         } catch (InterruptedException e) {
@@ -0,0 +1,402 @@
+package chat.system.server;
+
+import java.nio.charset.StandardCharsets;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A segment of the {@link MessageSearch} index: a run of consecutive messages, the times they were sent, and the
+ * posting list of every word in them.
+ * <br></br>
+ * A posting list holds the numbers, within the segment, of the messages containing a word, in increasing order.
+ * It is stored as the gap from each number to the one before it, each gap written as a varint of 7 bits per byte,
+ * so a common word takes about a byte per message and a rare word only a few bytes in all. Because the gaps do not
+ * depend on where a list starts, two lists are joined by copying the second after the first and rewriting only its
+ * first gap, which is what makes merging segments cheap.
+ * <br></br>
+ * Messages are added to the open segment until it is full, after which it is sealed and only read. Its methods are
+ * synchronized, as the open segment is searched while messages are added to it.
+ */
+public class IndexSegment {
+
+    private static final String SENDER_PREFIX = "@"; // marks a sender in the postings, words never contain it
+
+    private int size;
+    private long[] times; // the time each message was sent, in increasing order
+    private byte[] text; // the messages, in UTF-8
+    private int[] textStarts; // the start of each message in the text, and the end of the last one
+    private HashMap<String, PostingList> postings;
+
+    /**
+     * The numbers of the messages containing a word, as gaps written as varints.
+     */
+    private static final class PostingList {
+
+        private byte[] data = new byte[4];
+        private int length;
+        private int count;
+        private int last = -1; // the last number added
+
+        private void add(int message) {
+            // a word used twice in a message is only added once
+            if (message == last) {
+                return;
+            }
+
+            writeVarint(message - last);
+            last = message;
+            count++;
+        }
+
+        /**
+         * Adds every number of another list, each increased by an offset, to the end of this list.
+         * @param other the list to add, its numbers plus the offset must be greater than the last number here.
+         * @param offset the amount added to each number.
+         */
+        private void append(PostingList other, int offset) {
+            if (other.count == 0) {
+                return;
+            }
+
+            // only the first gap depends on the rest of the list, the others are copied as they are
+            int first = 0;
+            int shift = 0;
+            int position = 0;
+            byte b;
+            do {
+                b = other.data[position++];
+                first |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            first--; // the first gap of a list is counted from -1
+
+            writeVarint(first + offset - last);
+
+            int rest = other.length - position;
+            ensureCapacity(rest);
+            System.arraycopy(other.data, position, data, length, rest);
+            length += rest;
+
+            last = other.last + offset;
+            count += other.count;
+        }
+
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                data[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+
+        private void ensureCapacity(int extra) {
+            if (length + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+            }
+        }
+
+    }
+
+    /**
+     * Reads the numbers of a posting list in increasing order, decoding each gap only when it is reached, so lists
+     * are intersected without being decoded into arrays.
+     */
+    private static final class PostingCursor {
+
+        private final PostingList list;
+        private int position; // the position in the data of the next gap
+        private int read; // the number of numbers read so far
+        private int message = -1; // the number most recently read
+
+        private PostingCursor(PostingList list) {
+            this.list = list;
+        }
+
+        /**
+         * Moves to the first number at or after a message.
+         * @param target the message.
+         * @return The number moved to, or Integer.MAX_VALUE if the list has no such number.
+         */
+        private int advanceTo(int target) {
+            while (message < target) {
+                if (read == list.count) {
+                    message = Integer.MAX_VALUE;
+                    break;
+                }
+
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = list.data[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+
+                message += gap;
+                read++;
+            }
+
+            return message;
+        }
+
+    }
+
+    /**
+     * Constructor for an empty segment.
+     * @param capacity the number of messages the segment can hold.
+     */
+    public IndexSegment(int capacity) {
+        times = new long[capacity];
+        text = new byte[capacity * 32];
+        textStarts = new int[capacity + 1];
+        postings = new HashMap<String, PostingList>();
+    }
+
+    /**
+     * @return The number of messages in the segment.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return The number of bytes of text the messages in the segment take up.
+     */
+    public synchronized int getTextLength() {
+        return textStarts[size];
+    }
+
+    /**
+     * @return True if the segment cannot hold any more messages.
+     */
+    public synchronized boolean isFull() {
+        return size == times.length;
+    }
+
+    /**
+     * Adds a message to the segment.
+     * @param time the time the message was sent, in milliseconds, no earlier than the last message.
+     * @param sender the name of the user who sent the message, or an empty string if it was not sent by a user.
+     * @param message the message.
+     * @throws IllegalStateException If the segment is full.
+     */
+    public synchronized void add(long time, String sender, String message) {
+        if (size == times.length) {
+            throw new IllegalStateException("The segment is full.");
+        }
+
+        times[size] = time;
+
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        int start = textStarts[size];
+        if (start + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, start + bytes.length));
+        }
+        System.arraycopy(bytes, 0, text, start, bytes.length);
+        textStarts[size + 1] = start + bytes.length;
+
+        for (String word : SearchQuery.getWords(message)) {
+            getPostingList(word).add(size);
+        }
+        if (!sender.isEmpty()) {
+            getPostingList(SENDER_PREFIX + sender.toLowerCase()).add(size);
+        }
+
+        size++;
+    }
+
+    /**
+     * @param key a word or a sender.
+     * @return The posting list of the key, a new one if the key is not in the segment yet.
+     */
+    private PostingList getPostingList(String key) {
+        PostingList list = postings.get(key);
+        if (list == null) {
+            list = new PostingList();
+            postings.put(key, list);
+        }
+
+        return list;
+    }
+
+    /**
+     * Frees the space the segment does not use, once no more messages will be added to it.
+     */
+    public synchronized void seal() {
+        times = Arrays.copyOf(times, size);
+        textStarts = Arrays.copyOf(textStarts, size + 1);
+        text = Arrays.copyOf(text, textStarts[size]);
+
+        for (PostingList list : postings.values()) {
+            list.data = Arrays.copyOf(list.data, list.length);
+        }
+    }
+
+    /**
+     * Finds the messages in the segment that match a query.
+     * @param query the query.
+     * @param limit the number of results wanted in all, no more are added once the results reach it.
+     * @param results the results so far, the matching messages are added to it newest first, each preceded by the
+     * time it was sent.
+     * @param format formats the time of each message.
+     * @return The number of messages in the segment that match.
+     */
+    public synchronized int search(SearchQuery query, int limit, List<String> results, DateFormat format) {
+        int lowest = lowerBound(query.getSince());
+        int highest = query.getUntil() == Long.MAX_VALUE ? size : lowerBound(query.getUntil());
+        if (lowest >= highest) {
+            return 0;
+        }
+
+        ArrayList<PostingList> lists = new ArrayList<PostingList>();
+        ArrayList<String> keys = new ArrayList<String>(query.getWords());
+        if (query.getSender() != null) {
+            keys.add(SENDER_PREFIX + query.getSender());
+        }
+        for (String key : keys) {
+            PostingList list = postings.get(key);
+            if (list == null) {
+                return 0;
+            }
+            lists.add(list);
+        }
+
+        int wanted = Math.max(0, limit - results.size());
+
+        if (lists.isEmpty()) {
+            // only a time range was given, so every message in it matches and only the newest are read
+            for (int message = highest - 1; message >= lowest && message >= highest - wanted; message--) {
+                results.add(getResult(message, format));
+            }
+
+            return highest - lowest;
+        }
+
+        // the matches are found oldest first, but only the newest are wanted, so the last of them are kept in a ring
+        int[] newest = new int[wanted];
+        int foundCount = 0;
+
+        // start from the rarest key, and move every list to the message each other list is at, until they all agree
+        lists.sort(new Comparator<PostingList>() {
+            @Override
+            public int compare(PostingList first, PostingList second) {
+                return Integer.compare(first.count, second.count);
+            }
+        });
+
+        PostingCursor[] cursors = new PostingCursor[lists.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = new PostingCursor(lists.get(i));
+        }
+
+        int candidate = cursors[0].advanceTo(lowest);
+        while (candidate < highest) {
+            boolean inAll = true;
+            for (int j = 1; j < cursors.length && inAll; j++) {
+                int message = cursors[j].advanceTo(candidate);
+                if (message != candidate) {
+                    candidate = message < highest ? cursors[0].advanceTo(message) : highest;
+                    inAll = false;
+                }
+            }
+
+            if (inAll) {
+                if (wanted > 0) {
+                    newest[foundCount % wanted] = candidate;
+                }
+                foundCount++;
+
+                candidate = cursors[0].advanceTo(candidate + 1);
+            }
+        }
+
+        for (int i = foundCount - 1; i >= 0 && i >= foundCount - wanted; i--) {
+            results.add(getResult(newest[i % wanted], format));
+        }
+
+        return foundCount;
+    }
+
+    /**
+     * @param message the number of a message in the segment.
+     * @param format formats the time of the message.
+     * @return The message, preceded by the time it was sent.
+     */
+    private String getResult(int message, DateFormat format) {
+        return "[" + format.format(new Date(times[message])) + "] " + new String(text, textStarts[message],
+                textStarts[message + 1] - textStarts[message], StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param time a time in milliseconds.
+     * @return The number of the first message sent at or after the time, or the size if there is none.
+     */
+    private int lowerBound(long time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (times[middle] < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    /**
+     * Merges sealed segments into one sealed segment.
+     * @param segments the segments, in the order their messages were sent.
+     * @return The merged segment.
+     */
+    public static IndexSegment merge(List<IndexSegment> segments) {
+        int capacity = 0;
+        long textLength = 0;
+        for (IndexSegment segment : segments) {
+            capacity += segment.size();
+            textLength += segment.getTextLength();
+        }
+
+        if (textLength > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("The merged segment would hold " + textLength + " bytes of text.");
+        }
+
+        IndexSegment merged = new IndexSegment(0);
+        merged.times = new long[capacity];
+        merged.text = new byte[(int) textLength];
+        merged.textStarts = new int[capacity + 1];
+
+        for (IndexSegment segment : segments) {
+            synchronized (segment) {
+                int offset = merged.size;
+                int textOffset = merged.textStarts[offset];
+
+                System.arraycopy(segment.times, 0, merged.times, offset, segment.size);
+                System.arraycopy(segment.text, 0, merged.text, textOffset, segment.textStarts[segment.size]);
+                for (int i = 1; i <= segment.size; i++) {
+                    merged.textStarts[offset + i] = textOffset + segment.textStarts[i];
+                }
+
+                for (Map.Entry<String, PostingList> entry : segment.postings.entrySet()) {
+                    merged.getPostingList(entry.getKey()).append(entry.getValue(), offset);
+                }
+
+                merged.size += segment.size;
+            }
+        }
+
+        merged.seal();
+        return merged;
+    }
+
+}
@@ -0,0 +1,282 @@
+package chat.system.server;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indexes the messages sent to the chat so users can search them with the /find command, by word, sender and time,
+ * see {@link SearchQuery}.
+ * <br></br>
+ * Messages are indexed on a thread of their own, into the open {@link IndexSegment}. Once it is full it is sealed
+ * and a new one is opened, and whenever enough sealed segments of a similar size have built up, they are merged
+ * into one in the background, so a search only has to look through a few segments. Only the most recent messages
+ * are kept, the oldest segments are dropped once there are more. Searches run on their own threads too, so neither
+ * indexing nor searching ever delays the messages being sent to users.
+ */
+public class MessageSearch {
+
+    private static final int SEGMENT_SIZE = 4096; // the messages in a new segment
+    private static final int MERGE_FACTOR = 8; // the segments of a similar size that are merged at once
+    private static final int MAX_SEGMENT_SIZE = SEGMENT_SIZE << 9; // segments this big are not merged further
+    private static final int MAX_SEGMENT_BYTES = 1 << 28; // segments are not merged past this much text
+    private static final int MAX_MESSAGES = 4000000; // the messages kept, older segments are dropped
+    private static final int MAX_RESULTS = 20; // the messages a search shows
+    private static final int QUEUE_CAPACITY = 10000; // the messages that can wait to be indexed
+    private static final int MAX_WAITING_SEARCHES = 100;
+
+    // every segment, oldest first, the last is the open segment. The list is never changed, only replaced while
+    // holding the lock of this object, so a search can read it without locking
+    private volatile List<IndexSegment> segments;
+    private boolean merging; // true while a merge is running, guarded by this
+
+    private long lastTime; // the time of the last message indexed, only used on the indexing thread
+
+    private ThreadPoolExecutor indexer;
+    private ExecutorService merger;
+    private ThreadPoolExecutor searchers;
+
+    private AtomicLong droppedMessages; // messages not indexed as too many were waiting
+
+    /**
+     * Constructor for an empty index, starts its threads.
+     */
+    public MessageSearch() {
+        segments = Collections.singletonList(new IndexSegment(SEGMENT_SIZE));
+        droppedMessages = new AtomicLong();
+
+        // a message that cannot be indexed straight away waits, but if too many are waiting it is not indexed,
+        // rather than making the user that sent it wait
+        indexer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY), createThreadFactory("MessageSearch-index"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        merger = Executors.newSingleThreadExecutor(createThreadFactory("MessageSearch-merge"));
+
+        int searcherCount = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        searchers = new ThreadPoolExecutor(searcherCount, searcherCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(MAX_WAITING_SEARCHES), createThreadFactory("MessageSearch-search"),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * @param name the name of the threads.
+     * @return A factory for daemon threads, so the index never keeps the server running.
+     */
+    private static ThreadFactory createThreadFactory(final String name) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    /**
+     * @return The number of messages that were not indexed because too many were waiting.
+     */
+    public long getDroppedMessages() {
+        return droppedMessages.get();
+    }
+
+    /**
+     * Indexes a message sent to the chat, without waiting for it to be indexed.
+     * @param message the message, as sent to every user.
+     */
+    public void add(final String message) {
+        final long time = System.currentTimeMillis();
+
+        try {
+            indexer.execute(new Runnable() {
+                @Override
+                public void run() {
+                    index(time, message);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            droppedMessages.incrementAndGet();
+        }
+    }
+
+    /**
+     * Searches the messages on a search thread and sends the results to the user who asked. The results are the
+     * most recent messages that match, oldest first.
+     * @param text the text entered after the /find command.
+     * @param user the user searching.
+     */
+    public void search(final String text, final ServerThread user) {
+        try {
+            searchers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    runSearch(text, user);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            user.sendServerResponse("The server is busy, please search again later.");
+        }
+    }
+
+    /**
+     * Adds a message to the open segment, on the indexing thread, and opens a new segment once it is full.
+     * @param time the time the message was received.
+     * @param message the message.
+     */
+    private void index(long time, String message) {
+        // messages are indexed in the order they were received, so their times never go back
+        lastTime = Math.max(lastTime, time);
+
+        List<IndexSegment> current = segments;
+        IndexSegment open = current.get(current.size() - 1);
+        open.add(lastTime, getSender(message), message);
+
+        if (open.isFull()) {
+            open.seal();
+
+            synchronized (this) {
+                ArrayList<IndexSegment> next = new ArrayList<IndexSegment>(segments);
+                next.add(new IndexSegment(SEGMENT_SIZE));
+
+                // drop the oldest segments while the rest still hold enough messages
+                int total = 0;
+                for (IndexSegment segment : next) {
+                    total += segment.size();
+                }
+                while (next.size() > 1 && total - next.get(0).size() >= MAX_MESSAGES) {
+                    total -= next.remove(0).size();
+                }
+
+                segments = Collections.unmodifiableList(next);
+                startMerge();
+            }
+        }
+    }
+
+    /**
+     * Starts merging the newest run of sealed segments of a similar size, if there are enough of them and no merge is
+     * running. Must be called holding the lock of this object.
+     */
+    private void startMerge() {
+        if (merging) {
+            return;
+        }
+
+        List<IndexSegment> current = segments;
+        int end = current.size() - 1; // the open segment is never merged
+        long textLength = 0;
+        for (int start = end - 1; start >= 0; start--) {
+            IndexSegment segment = current.get(start);
+            textLength += segment.getTextLength();
+            if (segment.size() >= MAX_SEGMENT_SIZE || textLength > MAX_SEGMENT_BYTES
+                    || getTier(segment) != getTier(current.get(end - 1))) {
+                break;
+            }
+
+            if (end - start == MERGE_FACTOR) {
+                final List<IndexSegment> run = new ArrayList<IndexSegment>(current.subList(start, end));
+                merging = true;
+
+                merger.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        finishMerge(run, IndexSegment.merge(run));
+                    }
+                });
+                return;
+            }
+        }
+    }
+
+    /**
+     * Replaces the segments that have been merged with the merged segment, on the merge thread, and starts the next
+     * merge if there is one. If some of the segments have been dropped meanwhile, the merged segment is discarded.
+     * @param run the segments that were merged.
+     * @param merged the merged segment.
+     */
+    private synchronized void finishMerge(List<IndexSegment> run, IndexSegment merged) {
+        merging = false;
+
+        ArrayList<IndexSegment> next = new ArrayList<IndexSegment>(segments);
+        int start = next.indexOf(run.get(0));
+        if (start >= 0) {
+            next.subList(start, start + run.size()).clear();
+            next.add(start, merged);
+            segments = Collections.unmodifiableList(next);
+        }
+
+        startMerge();
+    }
+
+    /**
+     * @param segment a segment.
+     * @return The tier of the segment's size: segments merged together come from the same tier, and the merged
+     * segment is in the next tier up.
+     */
+    private static int getTier(IndexSegment segment) {
+        int tier = 0;
+        for (long size = SEGMENT_SIZE; size * MERGE_FACTOR <= segment.size(); size *= MERGE_FACTOR) {
+            tier++;
+        }
+
+        return tier;
+    }
+
+    /**
+     * Runs a search, on a search thread, and sends the results to the user who asked.
+     * @param text the text entered after the /find command.
+     * @param user the user searching.
+     */
+    private void runSearch(String text, ServerThread user) {
+        SearchQuery query;
+        try {
+            query = SearchQuery.parse(text, System.currentTimeMillis());
+        } catch (IllegalArgumentException e) {
+            user.sendServerResponse(e.getMessage());
+            return;
+        }
+
+        long start = System.nanoTime();
+
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+        ArrayList<String> results = new ArrayList<String>();
+        int found = 0;
+
+        List<IndexSegment> current = segments;
+        for (int i = current.size() - 1; i >= 0; i--) {
+            found += current.get(i).search(query, MAX_RESULTS, results, format);
+        }
+
+        long time = (System.nanoTime() - start) / 1000000;
+        user.sendServerResponse(found + " messages found for \"" + text.trim() + "\" in " + time + " ms"
+                + (results.size() < found ? ", showing the last " + results.size() + ":" : ":"));
+
+        for (int i = results.size() - 1; i >= 0; i--) {
+            user.sendServerResponse(results.get(i));
+        }
+    }
+
+    /**
+     * @param message a message sent to the chat.
+     * @return The name of the user who sent the message, or an empty string if it was not sent by a user.
+     */
+    private static String getSender(String message) {
+        int end = message.indexOf("]:");
+        if (!message.startsWith("[") || end == -1) {
+            return "";
+        }
+
+        return message.substring(1, end);
+    }
+
+}
@@ -0,0 +1,153 @@
+package chat.system.server;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A search of the messages sent to the chat, as entered after the /find command, e.g.
+ * "/find meeting friday from:alice since:2h". Every word must be in a message for it to match, ignoring case.
+ * from: limits the search to one user's messages. since: and until: limit it to a time range, given either as a time
+ * ago, such as 30s, 15m, 2h or 7d, or as a date, such as 2024-05-01 or 2024-05-01T09:30.
+ */
+public class SearchQuery {
+
+    // starts a search, it begins with a / so it is never mistaken for a chat message, and it is not /search, which
+    // the client uses for its own history
+    static final String COMMAND = "/find";
+
+    static final String USAGE = "Search messages with: " + COMMAND + " words from:name since:time until:time, where a time is "
+            + "e.g. 30m, 2h, 7d, 2024-05-01 or 2024-05-01T09:30.";
+
+    private List<String> words;
+    private String sender; // in lower case, or null for any user
+    private long since; // the earliest time a message can have been sent, in milliseconds
+    private long until; // the time a message must have been sent before, in milliseconds
+
+    /**
+     * Constructor for a query, use {@link #parse(String, long)}.
+     */
+    private SearchQuery() {
+        words = new ArrayList<String>();
+        since = Long.MIN_VALUE;
+        until = Long.MAX_VALUE;
+    }
+
+    /**
+     * @return The words a message must contain, in lower case.
+     */
+    public List<String> getWords() {
+        return words;
+    }
+
+    /**
+     * @return The name of the user who must have sent a message, in lower case, or null for any user.
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * @return The earliest time a message can have been sent, in milliseconds.
+     */
+    public long getSince() {
+        return since;
+    }
+
+    /**
+     * @return The time a message must have been sent before, in milliseconds.
+     */
+    public long getUntil() {
+        return until;
+    }
+
+    /**
+     * Reads a query.
+     * @param text the text entered after the /find command.
+     * @param now the current time in milliseconds, that relative times are counted back from.
+     * @return The query.
+     * @throws IllegalArgumentException If the query is empty or a part of it is not in the format described above,
+     * the message says how to search.
+     */
+    public static SearchQuery parse(String text, long now) {
+        SearchQuery query = new SearchQuery();
+
+        for (String part : text.trim().split("\\s+")) {
+            String lowerCase = part.toLowerCase();
+
+            if (lowerCase.startsWith("from:") && part.length() > "from:".length()) {
+                query.sender = lowerCase.substring("from:".length());
+            } else if (lowerCase.startsWith("since:")) {
+                query.since = parseTime(part.substring("since:".length()), now);
+            } else if (lowerCase.startsWith("until:")) {
+                query.until = parseTime(part.substring("until:".length()), now);
+            } else {
+                query.words.addAll(getWords(part));
+            }
+        }
+
+        if (query.words.isEmpty() && query.sender == null && query.since == Long.MIN_VALUE
+                && query.until == Long.MAX_VALUE) {
+            throw new IllegalArgumentException(USAGE);
+        }
+
+        return query;
+    }
+
+    /**
+     * @param value a time ago, such as 15m, or a date, such as 2024-05-01 or 2024-05-01T09:30.
+     * @param now the current time in milliseconds.
+     * @return The time in milliseconds.
+     * @throws IllegalArgumentException If the time is not in one of those formats.
+     */
+    private static long parseTime(String value, long now) {
+        if (value.matches("\\d+[smhd]")) {
+            long amount = Long.parseLong(value.substring(0, value.length() - 1));
+            switch (value.charAt(value.length() - 1)) {
+                case 's':
+                    return now - amount * 1000L;
+                case 'm':
+                    return now - amount * 60000L;
+                case 'h':
+                    return now - amount * 3600000L;
+                default:
+                    return now - amount * 86400000L;
+            }
+        }
+
+        String pattern = value.contains("T") ? "yyyy-MM-dd'T'HH:mm" : "yyyy-MM-dd";
+        SimpleDateFormat format = new SimpleDateFormat(pattern);
+        format.setLenient(false);
+
+        try {
+            return format.parse(value).getTime();
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("\"" + value + "\" is not a time. " + USAGE);
+        }
+    }
+
+    /**
+     * Splits text into the words that are searched for: runs of letters and digits, in lower case.
+     * @param text the text.
+     * @return The words, in the order they appear.
+     */
+    static List<String> getWords(String text) {
+        ArrayList<String> words = new ArrayList<String>();
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordCharacter = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+
+            if (wordCharacter && start < 0) {
+                start = i;
+            } else if (!wordCharacter && start >= 0) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+
+        return words;
+    }
+
+}
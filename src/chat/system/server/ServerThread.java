@@ -3,6 +3,7 @@ package chat.system.server;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
 
@@ -12,21 +13,34 @@ import java.net.Socket;
  */
 public class ServerThread extends Thread {
 
+    private static final String FRAME_PREFIX = "[GameClient]: FRAME ";
+    private static final String LEADERBOARD_PREFIX = "[GameClient]: Leaderboard: ";
+
     private Socket clientSocket;
     private ChatServer server; // server that its client is connected to
 
+    private OutputStream clientOutputStream;
     private PrintWriter clientOutputWriter; // used to write to the client
 
+    // held while writing to the client, so messages from other threads, such as game frames, are never interleaved
+    private final Object outputLock = new Object();
+
     private String clientName;
 
     /**
-     * Constructor for ServerThread, assigns arguments to respective fields;
+     * Constructor for ServerThread, assigns arguments to respective fields. The writer to the client is created here
+     * rather than when the thread starts, so other users can send the client messages as soon as it is added.
      * @param clientSocket The client socket that will connect with the server.
      * @param server The server that has instantiated this ServerThread.
+     * @throws IOException If the output stream of the client socket cannot be opened.
      */
-    public ServerThread(Socket clientSocket, ChatServer server) {
+    public ServerThread(Socket clientSocket, ChatServer server) throws IOException {
         this.clientSocket = clientSocket;
         this.server = server;
+
+        // PrintWriter that writes to the client socket
+        clientOutputStream = clientSocket.getOutputStream();
+        clientOutputWriter = new PrintWriter(clientOutputStream, true);
     }
 
     /**
@@ -47,9 +61,6 @@ public class ServerThread extends Thread {
             // BufferedReader that reads the input from the client socket
             BufferedReader clientInputReader = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
 
-            // PrintWriter that writes to the client socket
-            clientOutputWriter = new PrintWriter(clientSocket.getOutputStream(), true);
-
             while (true) {
                 String clientInput = clientInputReader.readLine();
 
@@ -63,7 +74,13 @@ public class ServerThread extends Thread {
                     synchronized(server) {
                         // if a message from the GameClient is received, the message content needs to be examined
                         // so that only the player is sent the response from the game they are playing
-                        if (clientInput.startsWith("[GameClient]:")) {
+                        if (clientInput.startsWith(FRAME_PREFIX)) {
+                            // frames of the game are only sent to the users spectating it
+                            server.getSpectatorFeed().publish(clientInput);
+                        } else if (clientInput.startsWith(LEADERBOARD_PREFIX)) {
+                            // anyone can ask for the leaderboard, so every user is sent the answer
+                            server.sendResponseToAllUsers(clientInput);
+                        } else if (clientInput.startsWith("[GameClient]:")) {
                             // all clients receive messages involving a client starting, attempting to start,
                             // and ending the game session, any other messages from the GameClient are sent only
                             // to the player client
@@ -92,9 +109,23 @@ public class ServerThread extends Thread {
                             } else {
                                 server.sendResponseToAllUsers(clientInput);
                             }
+                        } else if (getMessageContent(clientInput).equals("SPECTATE")) {
+                            if (server.getSpectatorFeed().addSpectator(this)) {
+                                sendServerResponse("You are now spectating the game.");
+                            }
+                        } else if (getMessageContent(clientInput).equals("UNSPECTATE")) {
+                            if (server.getSpectatorFeed().removeSpectator(this)) {
+                                sendServerResponse("You are no longer spectating the game.");
+                            }
+                        } else if (getMessageContent(clientInput).equals(SearchQuery.COMMAND)
+                                || getMessageContent(clientInput).startsWith(SearchQuery.COMMAND + " ")) {
+                            // searches run on the search threads, which send the results to only this user
+                            server.getMessageSearch().search(
+                                    getMessageContent(clientInput).substring(SearchQuery.COMMAND.length()), this);
                         } else {
-                            // any other messages are sent to all clients.
+                            // any other messages are sent to all clients, and indexed so they can be searched
                             server.sendResponseToAllUsers(clientInput);
+                            server.getMessageSearch().add(clientInput);
                         }
                     }
                 } else {
@@ -124,12 +155,50 @@ public class ServerThread extends Thread {
         return string.substring(nameStartIndex, nameEndIndex).trim();
     }
 
+    /**
+     * Extracts the content of a message sent by a user, i.e. the text after "[name]: ".
+     * @param string The message received from the client.
+     * @return The content of the message, or an empty string if the message was not sent by a user.
+     */
+    private String getMessageContent(String string) {
+        int contentStartIndex = string.indexOf("]:");
+        if (!string.startsWith("[") || contentStartIndex == -1) {
+            return "";
+        }
+
+        return string.substring(contentStartIndex + "]:".length()).trim();
+    }
+
     /**
      * Writes the message supplied as the argument to the client socket.
      * @param serverResponse The response from the server that is to be sent to the client socket and printed.
      */
     public void sendServerResponse(String serverResponse) {
-        clientOutputWriter.println(serverResponse);
+        synchronized (outputLock) {
+            clientOutputWriter.println(serverResponse);
+        }
+    }
+
+    /**
+     * Writes a message that has already been encoded with {@link #encodeResponse(String)} to the client socket,
+     * so the same message can be sent to many clients while only being encoded once.
+     * @param encodedResponse The encoded message.
+     * @throws IOException If the message could not be written to the client socket.
+     */
+    public void sendEncodedResponse(byte[] encodedResponse) throws IOException {
+        synchronized (outputLock) {
+            clientOutputStream.write(encodedResponse);
+            clientOutputStream.flush();
+        }
+    }
+
+    /**
+     * Encodes a message as a line of bytes, in the same way as {@link #sendServerResponse(String)} writes it.
+     * @param serverResponse The message to be encoded.
+     * @return The bytes of the message followed by a line separator.
+     */
+    public static byte[] encodeResponse(String serverResponse) {
+        return (serverResponse + System.lineSeparator()).getBytes();
     }
 
 }
@@ -0,0 +1,146 @@
+package chat.system.server;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends the frames of the game being played to every user spectating it.
+ * <br></br>
+ * Each frame is encoded once and the same bytes are written to every spectator. Frames are written on separate
+ * threads so the player is never slowed down by a spectator, and each spectator only holds the latest frame waiting
+ * to be sent, so a spectator that cannot keep up skips the frames it missed rather than falling further behind.
+ */
+public class SpectatorFeed {
+
+    // the frame waiting to be sent to each spectator, null when the spectator is up to date
+    private ConcurrentHashMap<ServerThread, AtomicReference<byte[]>> spectators;
+
+    private ExecutorService senders;
+
+    private AtomicLong publishedFrames;
+    private AtomicLong droppedFrames;
+
+    /**
+     * Constructor for a SpectatorFeed with no spectators.
+     */
+    public SpectatorFeed() {
+        spectators = new ConcurrentHashMap<ServerThread, AtomicReference<byte[]>>();
+
+        senders = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "SpectatorFeed");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        publishedFrames = new AtomicLong();
+        droppedFrames = new AtomicLong();
+    }
+
+    /**
+     * Starts sending frames to a user.
+     * @param user the user that wants to spectate the game.
+     * @return True if the user was added, false if they were already spectating.
+     */
+    public boolean addSpectator(ServerThread user) {
+        return spectators.putIfAbsent(user, new AtomicReference<byte[]>()) == null;
+    }
+
+    /**
+     * Stops sending frames to a user, any frame waiting to be sent to them is discarded.
+     * @param user the user that no longer wants to spectate.
+     * @return True if the user was spectating.
+     */
+    public boolean removeSpectator(ServerThread user) {
+        AtomicReference<byte[]> pending = spectators.remove(user);
+        if (pending == null) {
+            return false;
+        }
+
+        pending.set(null);
+        return true;
+    }
+
+    /**
+     * @return The number of users spectating the game.
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * @return The number of frames published so far.
+     */
+    public long getPublishedFrames() {
+        return publishedFrames.get();
+    }
+
+    /**
+     * @return The number of frames that were replaced by a newer frame before they could be sent to a spectator.
+     */
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    /**
+     * Sends a frame to every spectator without waiting for it to be written.
+     * @param frame the frame to be sent, a single line.
+     */
+    public void publish(String frame) {
+        publishedFrames.incrementAndGet();
+
+        if (spectators.isEmpty()) {
+            return;
+        }
+
+        byte[] encoded = ServerThread.encodeResponse(frame);
+
+        for (final java.util.Map.Entry<ServerThread, AtomicReference<byte[]>> spectator : spectators.entrySet()) {
+            // if a frame is still waiting, the spectator is behind, so replace it and let the running sender pick up
+            // the new frame, otherwise start a sender for this spectator
+            if (spectator.getValue().getAndSet(encoded) != null) {
+                droppedFrames.incrementAndGet();
+            } else {
+                senders.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        send(spectator.getKey(), spectator.getValue());
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * Writes the waiting frame to a spectator until there is no newer frame waiting.
+     * @param user the spectator.
+     * @param pending the frame waiting to be sent to the spectator.
+     */
+    private void send(ServerThread user, AtomicReference<byte[]> pending) {
+        byte[] frame = pending.get();
+
+        while (frame != null) {
+            try {
+                user.sendEncodedResponse(frame);
+            } catch (IOException e) {
+                removeSpectator(user);
+                return;
+            }
+
+            // the slot is only cleared if no newer frame arrived while this one was being written
+            if (pending.compareAndSet(frame, null)) {
+                return;
+            }
+
+            frame = pending.get();
+        }
+    }
+
+}